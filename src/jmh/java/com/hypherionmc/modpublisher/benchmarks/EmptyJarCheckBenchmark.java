@@ -0,0 +1,62 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.benchmarks;
+
+import com.hypherionmc.modpublisher.plugin.ModPublisherGradleExtension;
+import com.hypherionmc.modpublisher.util.UploadPreChecks;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Throughput and latency of checking a jar for mod loader metadata.
+ * The check only looks at a few entries, so this mostly measures opening the jar
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmptyJarCheckBenchmark {
+
+    private static final List<String> LOADERS = Arrays.asList("fabric", "quilt", "forge", "neoforge");
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int classes;
+
+    private File directory;
+    private File jar;
+    private ModPublisherGradleExtension extension;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("modpublisher-jmh").toFile();
+        jar = SyntheticJars.create(directory, classes, SyntheticJars.Variant.CLEAN);
+
+        Project project = ProjectBuilder.builder().withProjectDir(new File(directory, "project")).build();
+        extension = new ModPublisherGradleExtension(project);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jar.delete();
+    }
+
+    @Benchmark
+    public void checkEmptyJar() throws Exception {
+        UploadPreChecks.checkEmptyJar(extension, jar, LOADERS);
+    }
+}
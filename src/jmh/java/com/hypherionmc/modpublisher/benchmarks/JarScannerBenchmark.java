@@ -0,0 +1,62 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.benchmarks;
+
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import com.hypherionmc.modpublisher.util.scanner.ScanOptions;
+import com.hypherionmc.modpublisher.util.scanner.ScanStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Throughput and latency of scanning a whole jar for malware.
+ * <p>
+ * This measures {@link JarInfectionScanner#isInfected}, which is what the scan tasks and
+ * {@link JarInfectionScanner#scan} run, without the Gradle logging around it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JarScannerBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int classes;
+
+    @Param({ "CLEAN", "SIG1", "SIG2", "GIANT_METHODS" })
+    public SyntheticJars.Variant variant;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private File directory;
+    private File jar;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("modpublisher-jmh").toFile();
+        jar = SyntheticJars.create(directory, classes, variant);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jar.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public boolean scan() throws IOException {
+        return JarInfectionScanner.isInfected(jar, new ScanOptions().threads(threads), new ScanStatistics());
+    }
+}
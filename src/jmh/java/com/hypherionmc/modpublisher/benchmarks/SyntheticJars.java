@@ -0,0 +1,178 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.benchmarks;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * @author HypherionSA
+ * Builds jars with generated classes to benchmark against.
+ * <p>
+ * Most classes only call harmless methods, but every 16th class calls everything the second
+ * signature looks for in the wrong order. Those get past the constant pool prefilter, so the
+ * automaton is exercised as well. Infected classes are always the last class in the jar, so the
+ * scanner has to go through everything before it finds them.
+ */
+public final class SyntheticJars {
+
+    public enum Variant {
+        // Nothing to find
+        CLEAN,
+        // The last class matches the first signature
+        SIG1,
+        // The last class matches the second signature
+        SIG2,
+        // Every 100th class has a method close to the 64KB bytecode limit
+        GIANT_METHODS
+    }
+
+    // {opcode, owner, name, desc}, type instructions have no name or desc
+    private static final Object[][] SIG1 = {
+            { NEW, "java/lang/String" },
+            { INVOKESPECIAL, "java/lang/String", "<init>", "([B)V" },
+            { NEW, "java/lang/String" },
+            { INVOKESPECIAL, "java/lang/String", "<init>", "([B)V" },
+            { INVOKESTATIC, "java/lang/Class", "forName", "(Ljava/lang/String;)Ljava/lang/Class;" },
+            { INVOKEVIRTUAL, "java/lang/Class", "getConstructor", "([Ljava/lang/Class;)Ljava/lang/reflect/Constructor;" },
+            { INVOKESPECIAL, "java/lang/String", "<init>", "([B)V" },
+            { INVOKESPECIAL, "java/lang/String", "<init>", "([B)V" },
+            { INVOKESPECIAL, "java/lang/String", "<init>", "([B)V" },
+            { INVOKESPECIAL, "java/net/URL", "<init>", "(Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;)V" },
+            { INVOKEVIRTUAL, "java/lang/reflect/Constructor", "newInstance", "([Ljava/lang/Object;)Ljava/lang/Object;" },
+            { INVOKESTATIC, "java/lang/Class", "forName", "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;" },
+            { INVOKESPECIAL, "java/lang/String", "<init>", "([B)V" },
+            { INVOKEVIRTUAL, "java/lang/Class", "getMethod", "(Ljava/lang/String;[Ljava/lang/Class;)Ljava/lang/reflect/Method;" },
+            { INVOKEVIRTUAL, "java/lang/reflect/Method", "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;" },
+    };
+
+    private static final Object[][] SIG2 = {
+            { INVOKESTATIC, "java/lang/Runtime", "getRuntime", "()Ljava/lang/Runtime;" },
+            { INVOKESTATIC, "java/util/Base64", "getDecoder", "()Ljava/util/Base64$Decoder;" },
+            { INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;" },
+            { INVOKEVIRTUAL, "java/util/Base64$Decoder", "decode", "(Ljava/lang/String;)[B" },
+            { INVOKESPECIAL, "java/lang/String", "<init>", "([B)V" },
+            { INVOKEVIRTUAL, "java/io/File", "getPath", "()Ljava/lang/String;" },
+            { INVOKEVIRTUAL, "java/lang/Runtime", "exec", "([Ljava/lang/String;)Ljava/lang/Process;" },
+    };
+
+    private static final Object[][] HARMLESS = {
+            { INVOKESTATIC, "java/lang/System", "nanoTime", "()J" },
+            { INVOKESTATIC, "java/lang/Math", "max", "(II)I" },
+            { NEW, "java/lang/StringBuilder" },
+            { INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V" },
+            { INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(Ljava/lang/String;)Ljava/lang/StringBuilder;" },
+            { INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;" },
+            { INVOKESTATIC, "java/util/Objects", "requireNonNull", "(Ljava/lang/Object;)Ljava/lang/Object;" },
+    };
+
+    private SyntheticJars() {}
+
+    /**
+     * Create a jar with generated classes. The jar also holds the metadata of every mod loader,
+     * so it passes the empty jar check
+     * @param directory The directory to create the jar in
+     * @param classes The number of classes in the jar
+     * @param variant What kind of classes to generate
+     * @return The jar
+     */
+    public static File create(File directory, int classes, Variant variant) throws IOException {
+        File jar = new File(directory, "synthetic-" + variant.name().toLowerCase() + "-" + classes + ".jar");
+
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            write(out, "fabric.mod.json", "{\"schemaVersion\": 1, \"id\": \"synthetic\"}".getBytes(StandardCharsets.UTF_8));
+            write(out, "quilt.mod.json", "{\"schema_version\": 1}".getBytes(StandardCharsets.UTF_8));
+            write(out, "META-INF/mods.toml", "modLoader=\"javafml\"".getBytes(StandardCharsets.UTF_8));
+
+            for (int i = 0; i < classes; i++) {
+                String name = "synthetic/p" + (i % 100) + "/C" + i;
+                boolean last = i == classes - 1;
+
+                MethodBody body;
+                if (last && variant == Variant.SIG1) {
+                    body = mv -> emit(mv, SIG1);
+                } else if (last && variant == Variant.SIG2) {
+                    body = mv -> emit(mv, SIG2);
+                } else if (variant == Variant.GIANT_METHODS && i % 100 == 0) {
+                    // 3 bytes per call, so this stays just below the 64KB limit
+                    body = mv -> {
+                        for (int j = 0; j < 20_000 / SIG2.length; j++) {
+                            emitReversed(mv, SIG2);
+                        }
+                    };
+                } else if (i % 16 == 0) {
+                    body = mv -> emitReversed(mv, SIG2);
+                } else {
+                    body = mv -> {
+                        for (int j = 0; j < 4; j++) {
+                            emit(mv, HARMLESS);
+                        }
+                    };
+                }
+
+                write(out, name + ".class", createClass(name, body));
+            }
+        }
+
+        return jar;
+    }
+
+    private static void write(ZipOutputStream out, String name, byte[] content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static byte[] createClass(String name, MethodBody body) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_8, ACC_PUBLIC, name, null, "java/lang/Object", null);
+
+        MethodVisitor mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()V", null, null);
+        mv.visitCode();
+        body.write(mv);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(32, 0);
+        mv.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void emit(MethodVisitor mv, Object[][] instructions) {
+        for (Object[] insn : instructions) {
+            emit(mv, insn);
+        }
+    }
+
+    private static void emitReversed(MethodVisitor mv, Object[][] instructions) {
+        for (int i = instructions.length - 1; i >= 0; i--) {
+            emit(mv, instructions[i]);
+        }
+    }
+
+    private static void emit(MethodVisitor mv, Object[] insn) {
+        int opcode = (int) insn[0];
+        if (opcode == NEW) {
+            mv.visitTypeInsn(opcode, (String) insn[1]);
+        } else {
+            mv.visitMethodInsn(opcode, (String) insn[1], (String) insn[2], (String) insn[3], false);
+        }
+    }
+
+    private interface MethodBody {
+        void write(MethodVisitor mv);
+    }
+}
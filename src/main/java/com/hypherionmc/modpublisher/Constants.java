@@ -16,9 +16,17 @@ public class Constants {
     public static final String CURSE_TASK = "publishCurseforge";
     public static final String GITHUB_TASK = "publishGitHub";
     public static final String MODRINTH_TASK = "publishModrinth";
+    public static final String CURSE_SCAN_TASK = "scanCurseforge";
+    public static final String GITHUB_SCAN_TASK = "scanGitHub";
+    public static final String MODRINTH_SCAN_TASK = "scanModrinth";
+    public static final String SCAN_DEPENDENCIES_TASK = "scanDependencies";
+    public static final String SCAN_SERVICE = "modpublisherScanService";
+    public static final String HTTP_SERVICE = "modpublisherHttpService";
+    public static final String UPLOAD_SERVICE = "modpublisherUploadService";
     public static final String TASK_GROUP = "publishing";
     public static final String EXTENSION_NAME = "publisher";
 
     public static final String MODRINTH_API = "https://api.modrinth.com/v2";
     public static final String MODRINTH_STAGING_API = "https://staging-api.modrinth.com/v2";
+    public static final String USER_AGENT = "modpublisher/v1 (https://github.com/firstdarkdev/modpublisher)";
 }
@@ -0,0 +1,307 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.cli;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import com.hypherionmc.modpublisher.util.scanner.ScanLimits;
+import com.hypherionmc.modpublisher.util.scanner.ScanOptions;
+import com.hypherionmc.modpublisher.util.scanner.ScanReport;
+import com.hypherionmc.modpublisher.util.scanner.ScanResult;
+import com.hypherionmc.modpublisher.util.scanner.ScanStatistics;
+import com.hypherionmc.modpublisher.util.scanner.SignatureDatabase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * @author HypherionSA
+ * Standalone scanner, to sweep whole directories of jars for fractureiser without Gradle.
+ * <p>
+ * Run with {@code java -jar ModPublisher.jar [options] <jar|directory|@list>...}. Directories are searched
+ * for jars recursively, and {@code @list} reads paths from a file, one per line ({@code @-} reads standard input).
+ * <p>
+ * Jars are scanned in parallel, a single jar per thread. Paths are handed to the threads while the directories are
+ * still being walked, with only a few waiting at any time, so memory use does not grow with the number of jars.
+ * <p>
+ * Every jar is printed to standard output as a single line of JSON, in the format of {@link ScanReport}
+ * with an added {@code path}. Jars that could not be read are printed with the status {@code ERROR}.
+ * A summary is printed to standard error once all jars are done.
+ * <p>
+ * Exits with 0 when every jar is clean, 1 when any jar is infected, and 2 when any jar could not be fully scanned.
+ */
+public final class ScannerCli {
+
+    private static final int EXIT_CLEAN = 0;
+    private static final int EXIT_INFECTED = 1;
+    private static final int EXIT_INCOMPLETE = 2;
+    private static final int EXIT_USAGE = 64;
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -jar ModPublisher.jar [options] <jar|directory|@list>...",
+            "",
+            "  --threads <n>        Jars to scan at the same time. Defaults to the number of CPU cores",
+            "  --nested-depth <n>   How deep nested jars are scanned. Defaults to 3",
+            "  --signatures <file>  Scan with a custom signature database",
+            "  --all-findings       Report every infected class, instead of stopping at the first one",
+            "  --resources          Also look for encoded payloads in resources. These never count as infected",
+            "  --slowest <n>        Include the n slowest classes of every jar. Defaults to 0",
+            "  --timeout <seconds>  Maximum time to spend on a single jar. Defaults to 600"
+    );
+
+    private final Gson gson = new Gson();
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private final AtomicLong jars = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong infected = new AtomicLong();
+    private final AtomicLong incomplete = new AtomicLong();
+
+    private ScannerCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Run the scanner
+     * @param args The command line arguments
+     * @param out Where the results are printed
+     * @param err Where the summary and errors are printed
+     * @return The exit code
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int slowest = 0;
+        ScanOptions options = new ScanOptions().threads(1);
+        List<String> paths = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Math.max(1, Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--nested-depth":
+                        options.nestedJarDepth(Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--signatures":
+                        options.signatures(SignatureDatabase.load(new File(value(args, ++i))));
+                        break;
+                    case "--all-findings":
+                        options.stopAtFirstFinding(false);
+                        break;
+                    case "--resources":
+                        options.scanResources(true);
+                        break;
+                    case "--slowest":
+                        slowest = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--timeout":
+                        options.limits(new ScanLimits().timeout(Duration.ofSeconds(Long.parseLong(value(args, ++i)))));
+                        break;
+                    case "--help":
+                        out.println(USAGE);
+                        return EXIT_CLEAN;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        paths.add(args[i]);
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        if (paths.isEmpty()) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        return new ScannerCli(out, err).scan(paths, options, threads, slowest);
+    }
+
+    private static String value(String[] args, int index) {
+        if (index >= args.length)
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        return args[index];
+    }
+
+    private int scan(List<String> paths, ScanOptions options, int threads, int slowest) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // Only let a few jars wait for a thread, instead of queueing up every jar that was found
+        Semaphore pending = new Semaphore(threads * 2);
+
+        try {
+            // Jars are submitted while the directories are still being walked, the walk waits when the threads fall behind
+            for (String path : paths) {
+                expand(path, jar -> {
+                    pending.acquireUninterruptibly();
+                    executor.execute(() -> {
+                        try {
+                            scanJar(jar.toFile(), options, slowest);
+                        } finally {
+                            pending.release();
+                        }
+                    });
+                });
+            }
+        } catch (IOException e) {
+            err.println("Failed to list jars: " + e.getMessage());
+            incomplete.incrementAndGet();
+        } finally {
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+
+        out.flush();
+        printSummary(System.nanoTime() - start);
+
+        if (infected.get() > 0)
+            return EXIT_INFECTED;
+        return incomplete.get() > 0 ? EXIT_INCOMPLETE : EXIT_CLEAN;
+    }
+
+    private void scanJar(File jarFile, ScanOptions options, int slowest) {
+        JsonObject json;
+
+        try {
+            ScanResult result = JarInfectionScanner.check(jarFile, options, new ScanStatistics(slowest));
+            json = ScanReport.toJson(result);
+
+            if (result.getStatus() == ScanResult.Status.INFECTED) {
+                infected.incrementAndGet();
+            } else if (result.getStatus() == ScanResult.Status.LIMIT_EXCEEDED) {
+                incomplete.incrementAndGet();
+            }
+
+            long skipped = result.getStatistics().getNestedJarsSkipped();
+            if (skipped > 0)
+                err.println("Warning: " + skipped + " jars nested in " + jarFile.getAbsolutePath() + " were not scanned, they are nested deeper than --nested-depth");
+        } catch (IOException | RuntimeException e) {
+            json = new JsonObject();
+            json.addProperty("file", jarFile.getName());
+            json.addProperty("status", "ERROR");
+            json.addProperty("error", e.toString());
+            incomplete.incrementAndGet();
+        }
+
+        json.addProperty("path", jarFile.getAbsolutePath());
+        jars.incrementAndGet();
+        bytes.addAndGet(jarFile.length());
+
+        String line = gson.toJson(json);
+        synchronized (out) {
+            out.println(line);
+        }
+    }
+
+    /**
+     * @param path A jar, a directory to search for jars, or {@code @file} with one of those on every line
+     * @param jars Called with every jar the path points to, as soon as it is found
+     */
+    private void expand(String path, Consumer<Path> jars) throws IOException {
+        if (!path.startsWith("@")) {
+            findJars(Paths.get(path), jars);
+            return;
+        }
+
+        String list = path.substring(1);
+
+        BufferedReader reader = list.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(list), StandardCharsets.UTF_8);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty())
+                    findJars(Paths.get(line), jars);
+            }
+        } finally {
+            if (!list.equals("-"))
+                reader.close();
+        }
+    }
+
+    private void findJars(Path root, Consumer<Path> jars) throws IOException {
+        // Anything that is not a directory is scanned as given, so a missing jar still shows up as an error
+        if (!Files.isDirectory(root)) {
+            jars.accept(root);
+            return;
+        }
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jar"))
+                    jars.accept(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                err.println("Failed to read " + file + ": " + e.getMessage());
+                incomplete.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void printSummary(long nanos) {
+        double seconds = Math.max(nanos / 1_000_000_000.0, 0.001);
+        double megabytes = bytes.get() / (1024.0 * 1024.0);
+
+        err.println(String.format(Locale.ROOT,
+                "Scanned %d jars (%.1f MB) in %.2f s, %.1f jars/s, %.1f MB/s. %d infected, %d not fully scanned",
+                jars.get(), megabytes, seconds, jars.get() / seconds, megabytes / seconds, infected.get(), incomplete.get()));
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -79,9 +79,46 @@ public class ModPublisherGradleExtension {
     // Disable Jar Scanning
     @Getter private final Property<Boolean> disableMalwareScanner;
 
+    // Number of threads the malware scanner is allowed to use
+    @Getter private final Property<Integer> scannerThreads;
+
+    // Number of scans allowed to run at the same time, across all projects of the build
+    @Getter private final Property<Integer> maxParallelScans;
+
+    // How deep jars nested inside the artifact are scanned. 0 disables scanning nested jars
+    @Getter private final Property<Integer> nestedJarScanDepth;
+
+    // Also look for encoded payloads in the resources of the jar. Only reported as warnings
+    @Getter private final Property<Boolean> scanResources;
+
+    // Skip classes that were already found clean in an earlier scan
+    @Getter private final Property<Boolean> incrementalMalwareScan;
+
+    // Maximum number of clean classes remembered by the incremental scanner
+    @Getter private final Property<Integer> incrementalScanCacheSize;
+
+    // Signature file to scan for malware with, instead of the signatures bundled with the plugin
+    @Getter private final Property<Object> signatureDatabase;
+
+    // Configurations whose dependency jars are scanned for malware before the published jar is built from them
+    @Getter private final ListProperty<String> scanDependencies;
+
+    // Limits that stop the malware scanner on zip bombs, or jars that are too large to scan
+    @Getter private final Property<Long> scanMaxEntrySize;
+    @Getter private final Property<Integer> scanMaxCompressionRatio;
+    @Getter private final Property<Long> scanMaxTotalSize;
+    @Getter private final Property<Integer> scanMaxClasses;
+    @Getter private final Property<Integer> scanTimeout;
+
     // Disable Empty Jar Checker
     @Getter private final Property<Boolean> disableEmptyJarCheck;
 
+    // Fill in loaders, game versions and Modrinth dependencies that are not configured from the mod descriptors in the jar
+    @Getter private final Property<Boolean> inferMetadata;
+
+    // Number of additional files uploaded to a GitHub release at the same time. Only 1 keeps the asset order
+    @Getter private final Property<Integer> githubMaxParallelUploads;
+
     // Allow uploads to modrinth staging
     @Getter private final Property<Boolean> useModrinthStaging;
 
@@ -124,8 +161,23 @@ public class ModPublisherGradleExtension {
         this.modrinthDepends = new Dependencies(modrinthRequired, modrinthOptional, modrinthIncompatible, modrinthEmbedded);
 
         this.disableMalwareScanner = project.getObjects().property(Boolean.class).convention(false);
+        this.scannerThreads = project.getObjects().property(Integer.class).convention(Runtime.getRuntime().availableProcessors());
+        this.maxParallelScans = project.getObjects().property(Integer.class).convention(1);
+        this.nestedJarScanDepth = project.getObjects().property(Integer.class).convention(3);
+        this.scanResources = project.getObjects().property(Boolean.class).convention(false);
+        this.incrementalMalwareScan = project.getObjects().property(Boolean.class).convention(false);
+        this.incrementalScanCacheSize = project.getObjects().property(Integer.class).convention(100_000);
+        this.signatureDatabase = project.getObjects().property(Object.class);
+        this.scanDependencies = project.getObjects().listProperty(String.class).empty();
+        this.scanMaxEntrySize = project.getObjects().property(Long.class).convention(64L * 1024 * 1024);
+        this.scanMaxCompressionRatio = project.getObjects().property(Integer.class).convention(100);
+        this.scanMaxTotalSize = project.getObjects().property(Long.class).convention(2L * 1024 * 1024 * 1024);
+        this.scanMaxClasses = project.getObjects().property(Integer.class).convention(1_000_000);
+        this.scanTimeout = project.getObjects().property(Integer.class).convention(600);
         this.disableEmptyJarCheck = project.getObjects().property(Boolean.class).convention(false);
+        this.inferMetadata = project.getObjects().property(Boolean.class).convention(false);
         this.useModrinthStaging = project.getObjects().property(Boolean.class).convention(false);
+        this.githubMaxParallelUploads = project.getObjects().property(Integer.class).convention(1);
         this.additionalFiles = project.getObjects().listProperty(AdditionalFile.class).empty();
     }
 
@@ -209,6 +261,14 @@ public class ModPublisherGradleExtension {
         this.loaders.addAll(loader);
     }
 
+    /**
+     * Scan the dependency jars of configurations, like {@code runtimeClasspath} or {@code shade}
+     * @param configuration The names of the configurations
+     */
+    public void setScanDependencies(String... configuration) {
+        this.scanDependencies.addAll(configuration);
+    }
+
     /**
      * Allow adding a single loader with the {@link ModLoader} helper enum
      * @param loader The loader to add
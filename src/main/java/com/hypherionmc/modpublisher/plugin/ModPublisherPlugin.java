@@ -7,19 +7,34 @@
 package com.hypherionmc.modpublisher.plugin;
 
 import com.hypherionmc.modpublisher.properties.Platform;
+import com.hypherionmc.modpublisher.services.HttpClientService;
+import com.hypherionmc.modpublisher.services.ScanService;
+import com.hypherionmc.modpublisher.services.UploadService;
 import com.hypherionmc.modpublisher.tasks.CurseUploadTask;
 import com.hypherionmc.modpublisher.tasks.GithubUploadTask;
 import com.hypherionmc.modpublisher.tasks.ModrinthPublishTask;
+import com.hypherionmc.modpublisher.tasks.ScanArtifactTask;
+import com.hypherionmc.modpublisher.tasks.ScanDependenciesTask;
 import com.hypherionmc.modpublisher.tasks.UploadModTask;
 import com.hypherionmc.modpublisher.util.CommonUtil;
 import com.hypherionmc.modpublisher.util.UploadPreChecks;
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import com.hypherionmc.modpublisher.util.scanner.ScanDependencyTransform;
+import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.dsl.DependencyHandler;
+import org.gradle.api.artifacts.type.ArtifactTypeDefinition;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.bundling.AbstractArchiveTask;
 
 import javax.annotation.Nonnull;
+import java.io.File;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import static com.hypherionmc.modpublisher.Constants.*;
 
@@ -36,28 +51,71 @@ public class ModPublisherPlugin implements Plugin<Project> {
         // Create the configuration extension
         ModPublisherGradleExtension extension = project.getExtensions().create(EXTENSION_NAME, ModPublisherGradleExtension.class);
 
+        // Shared by all projects, so every jar is only read once per build. Only the first project to register it decides how many scans run at once
+        Provider<ScanService> scanService = project.getGradle().getSharedServices().registerIfAbsent(
+                SCAN_SERVICE,
+                ScanService.class,
+                spec -> spec.getParameters().getMaxParallelScans().set(extension.getMaxParallelScans())
+        );
+
+        // One HTTP client for the whole build, so connections to the platforms are reused by every project
+        Provider<HttpClientService> httpService = project.getGradle().getSharedServices().registerIfAbsent(
+                HTTP_SERVICE,
+                HttpClientService.class,
+                spec -> {}
+        );
+
+        // Lets the platform tasks upload on Gradle workers
+        Provider<UploadService> uploadService = project.getGradle().getSharedServices().registerIfAbsent(
+                UPLOAD_SERVICE,
+                UploadService.class,
+                spec -> {}
+        );
+
         // Create the upload tasks
         final Task uploadTask = project.getTasks().create(TASK_NAME, UploadModTask.class);
         uploadTask.setDescription("Upload your mod to configured platforms");
         uploadTask.setGroup(TASK_GROUP);
 
-        final Task curseUploadTask = project.getTasks().create(CURSE_TASK, CurseUploadTask.class, project, extension);
+        final CurseUploadTask curseUploadTask = project.getTasks().create(CURSE_TASK, CurseUploadTask.class, project, extension);
         curseUploadTask.setDescription("Upload your mod to Curseforge");
         curseUploadTask.setGroup(TASK_GROUP);
+        curseUploadTask.setScanService(scanService);
+        curseUploadTask.usesService(scanService);
+        curseUploadTask.setHttpService(httpService);
+        curseUploadTask.usesService(httpService);
+        curseUploadTask.setUploadService(uploadService);
+        curseUploadTask.usesService(uploadService);
 
-        final Task gitHubUploadTask = project.getTasks().create(GITHUB_TASK, GithubUploadTask.class, project, extension);
+        final GithubUploadTask gitHubUploadTask = project.getTasks().create(GITHUB_TASK, GithubUploadTask.class, project, extension);
         gitHubUploadTask.setDescription("Upload your mod to GitHub");
         gitHubUploadTask.setGroup(TASK_GROUP);
+        gitHubUploadTask.setScanService(scanService);
+        gitHubUploadTask.usesService(scanService);
+        gitHubUploadTask.setHttpService(httpService);
+        gitHubUploadTask.usesService(httpService);
+        gitHubUploadTask.setUploadService(uploadService);
+        gitHubUploadTask.usesService(uploadService);
 
-        final Task modrinthUploadTask = project.getTasks().create(MODRINTH_TASK, ModrinthPublishTask.class, project, extension);
+        final ModrinthPublishTask modrinthUploadTask = project.getTasks().create(MODRINTH_TASK, ModrinthPublishTask.class, project, extension);
         modrinthUploadTask.setDescription("Upload your mod to Modrinth");
         modrinthUploadTask.setGroup(TASK_GROUP);
+        modrinthUploadTask.setScanService(scanService);
+        modrinthUploadTask.usesService(scanService);
+        modrinthUploadTask.setHttpService(httpService);
+        modrinthUploadTask.usesService(httpService);
+        modrinthUploadTask.setUploadService(uploadService);
+        modrinthUploadTask.usesService(uploadService);
 
         project.afterEvaluate(c -> {
+            Task dependencyScan = registerDependencyScan(project, extension, uploadTask);
+
             try {
                 if (UploadPreChecks.canUploadCurse(project, extension)) {
                     Object artifactObject = CommonUtil.getPlatformArtifact(Platform.CURSEFORGE, extension);
                     resolveInputTask(project, artifactObject, curseUploadTask);
+                    dependOnDependencyScan(project, artifactObject, dependencyScan);
+                    registerScanTask(project, extension, scanService, CURSE_SCAN_TASK, artifactObject, curseUploadTask);
                     uploadTask.dependsOn(curseUploadTask);
                 }
             } catch (Exception ignored) {}
@@ -66,6 +124,8 @@ public class ModPublisherPlugin implements Plugin<Project> {
                 if (UploadPreChecks.canUploadModrinth(project, extension)) {
                     Object artifactObject = CommonUtil.getPlatformArtifact(Platform.MODRINTH, extension);
                     resolveInputTask(project, artifactObject, modrinthUploadTask);
+                    dependOnDependencyScan(project, artifactObject, dependencyScan);
+                    registerScanTask(project, extension, scanService, MODRINTH_SCAN_TASK, artifactObject, modrinthUploadTask);
                     uploadTask.dependsOn(modrinthUploadTask);
                 }
             } catch (Exception ignored) {}
@@ -74,16 +134,130 @@ public class ModPublisherPlugin implements Plugin<Project> {
                 if (UploadPreChecks.canUploadGitHub(project, extension)) {
                     Object artifactObject = CommonUtil.getPlatformArtifact(Platform.GITHUB, extension);
                     resolveInputTask(project, artifactObject, gitHubUploadTask);
+                    dependOnDependencyScan(project, artifactObject, dependencyScan);
+                    registerScanTask(project, extension, scanService, GITHUB_SCAN_TASK, artifactObject, gitHubUploadTask);
                     uploadTask.dependsOn(gitHubUploadTask);
                 }
             } catch (Exception ignored) {}
         });
     }
 
+    private void registerScanTask(Project project, ModPublisherGradleExtension extension, Provider<ScanService> scanService, String name, Object artifactObject, Task mainTask) {
+        if (extension.getDisableMalwareScanner().get())
+            return;
+
+        final ScanArtifactTask scanTask = project.getTasks().create(name, ScanArtifactTask.class);
+        scanTask.setDescription("Scan the " + mainTask.getName() + " artifact for malware");
+        scanTask.setGroup(TASK_GROUP);
+        scanTask.getArtifact().fileProvider(project.provider(() -> CommonUtil.resolveFile(project, artifactObject)));
+        // Tasks are passed as they are, so the scan also depends on the tasks that build the additional files
+        scanTask.getAdditionalFiles().from(extension.getAdditionalFiles().map(files -> files.stream()
+                .map(ModPublisherGradleExtension.AdditionalFile::getArtifact)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())));
+        scanTask.getScannerThreads().set(extension.getScannerThreads());
+        scanTask.getNestedJarDepth().set(extension.getNestedJarScanDepth());
+        scanTask.getScanResources().set(extension.getScanResources());
+        scanTask.getMaxEntrySize().set(extension.getScanMaxEntrySize());
+        scanTask.getMaxCompressionRatio().set(extension.getScanMaxCompressionRatio());
+        scanTask.getMaxTotalSize().set(extension.getScanMaxTotalSize());
+        scanTask.getMaxClasses().set(extension.getScanMaxClasses());
+        scanTask.getScanTimeout().set(extension.getScanTimeout());
+        if (extension.getSignatureDatabase().isPresent())
+            scanTask.getSignatureDatabase().set(project.file(extension.getSignatureDatabase().get()));
+        if (extension.getIncrementalMalwareScan().get()) {
+            scanTask.getCleanClassCache().set(new File(project.getGradle().getGradleUserHomeDir(), "caches/modpublisher/clean-classes.bin"));
+            scanTask.getCleanClassCacheSize().set(extension.getIncrementalScanCacheSize());
+        }
+        scanTask.getReportDirectory().set(project.getLayout().getBuildDirectory().dir("modpublisher/scan/" + name));
+
+        scanTask.getScanService().set(scanService);
+        scanTask.usesService(scanService);
+
+        resolveInputTask(project, artifactObject, scanTask);
+        mainTask.dependsOn(scanTask);
+    }
+
+    /**
+     * @return The task that scans the dependencies, or null if they are not scanned
+     */
+    private Task registerDependencyScan(Project project, ModPublisherGradleExtension extension, Task uploadTask) {
+        List<String> configurations = extension.getScanDependencies().get();
+        if (extension.getDisableMalwareScanner().get() || configurations.isEmpty())
+            return null;
+
+        DependencyHandler dependencies = project.getDependencies();
+        dependencies.getAttributesSchema().attribute(ScanDependencyTransform.SCANNED);
+        dependencies.getArtifactTypes().maybeCreate(ArtifactTypeDefinition.JAR_TYPE).getAttributes().attribute(ScanDependencyTransform.SCANNED, false);
+        dependencies.registerTransform(ScanDependencyTransform.class, spec -> {
+            spec.getFrom().attribute(ScanDependencyTransform.SCANNED, false).attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ArtifactTypeDefinition.JAR_TYPE);
+            spec.getTo().attribute(ScanDependencyTransform.SCANNED, true).attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ScanDependencyTransform.REPORT_TYPE);
+            spec.parameters(parameters -> {
+                parameters.getSignatureVersion().set(JarInfectionScanner.SIGNATURE_VERSION);
+                if (extension.getSignatureDatabase().isPresent())
+                    parameters.getSignatureDatabase().set(project.file(extension.getSignatureDatabase().get()));
+                parameters.getNestedJarDepth().set(extension.getNestedJarScanDepth());
+                parameters.getMaxEntrySize().set(extension.getScanMaxEntrySize());
+                parameters.getMaxCompressionRatio().set(extension.getScanMaxCompressionRatio());
+                parameters.getMaxTotalSize().set(extension.getScanMaxTotalSize());
+                parameters.getMaxClasses().set(extension.getScanMaxClasses());
+                parameters.getScanTimeout().set(extension.getScanTimeout());
+                parameters.getScannerThreads().set(1);
+            });
+        });
+
+        final ScanDependenciesTask scanTask = project.getTasks().create(SCAN_DEPENDENCIES_TASK, ScanDependenciesTask.class);
+        scanTask.setDescription("Scan the dependencies of " + String.join(", ", configurations) + " for malware");
+        scanTask.setGroup(TASK_GROUP);
+
+        for (String name : configurations) {
+            Configuration configuration = project.getConfigurations().findByName(name);
+            if (configuration == null)
+                throw new GradleException("Configuration " + name + " from scanDependencies does not exist");
+
+            // Requesting the reports is what makes Gradle run the transform
+            scanTask.getScanReports().from(configuration.getIncoming().artifactView(view ->
+                    view.attributes(attributes -> attributes
+                            .attribute(ScanDependencyTransform.SCANNED, true)
+                            .attribute(ArtifactTypeDefinition.ARTIFACT_TYPE_ATTRIBUTE, ScanDependencyTransform.REPORT_TYPE))
+            ).getFiles());
+        }
+        scanTask.getReportDirectory().set(project.getLayout().getBuildDirectory().dir("modpublisher/scan/" + SCAN_DEPENDENCIES_TASK));
+
+        uploadTask.dependsOn(scanTask);
+        return scanTask;
+    }
+
+    /**
+     * Catch infected libraries before they are shaded or nested into the jar that is published.
+     * Other archives, like the sources jar, never contain the dependencies, so they do not wait for the scan
+     */
+    private void dependOnDependencyScan(Project project, Object artifactObject, Task dependencyScan) {
+        if (dependencyScan == null)
+            return;
+
+        Task task = findArchiveTask(project, artifactObject);
+        if (task != null)
+            task.dependsOn(dependencyScan);
+    }
+
     private void resolveInputTask(Project project, Object inTask, Task mainTask) {
         if (project == null || inTask == null || mainTask == null)
             return;
 
+        Task task = findArchiveTask(project, inTask);
+        if (task == null)
+            return;
+
+        String taskName = "prepare" + mainTask.getName() + "upload" + project.getName();
+        project.task(taskName).dependsOn(task);
+        mainTask.dependsOn(taskName);
+    }
+
+    private Task findArchiveTask(Project project, Object inTask) {
+        if (inTask == null)
+            return null;
+
         Task task = null;
 
         if (inTask instanceof Provider) {
@@ -100,13 +274,8 @@ public class ModPublisherPlugin implements Plugin<Project> {
         }
 
         if (!(task instanceof AbstractArchiveTask))
-            return;
-
-        if (task == null)
-            return;
+            return null;
 
-        String taskName = "prepare" + mainTask.getName() + "upload" + project.getName();
-        project.task(taskName).dependsOn(task);
-        mainTask.dependsOn(taskName);
+        return task;
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.services;
+
+import com.hypherionmc.modpublisher.Constants;
+import com.hypherionmc.modpublisher.util.UserAgentInterceptor;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Build wide service that owns the HTTP client of the plugin. All projects, platforms and changelog
+ * downloads share one connection pool, so a multi project publish does a single TLS handshake per host,
+ * instead of one per task and request.
+ * <p>
+ * Idle connections are kept for longer than OkHttp does by default, so they survive the time between the
+ * first and the last project publishing. They are closed when the build finishes.
+ */
+public abstract class HttpClientService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+
+    // Enough for every platform of several projects at once, without flooding a single API
+    private static final int MAX_REQUESTS = 64;
+    private static final int MAX_REQUESTS_PER_HOST = 8;
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 15;
+
+    private volatile OkHttpClient client;
+
+    /**
+     * @return The shared client. Clients that need other settings should be made with
+     * {@link OkHttpClient#newBuilder()}, which keeps the connection pool and dispatcher
+     */
+    public OkHttpClient getClient() {
+        OkHttpClient result = client;
+        if (result == null) {
+            synchronized (this) {
+                result = client;
+                if (result == null) {
+                    client = result = createClient();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static OkHttpClient createClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        // UserAgent and longer timeouts, as uploads of large jars can be slow
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .callTimeout(1, TimeUnit.MINUTES)
+                .connectTimeout(1, TimeUnit.MINUTES)
+                .addNetworkInterceptor(new UserAgentInterceptor(Constants.USER_AGENT))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        OkHttpClient result = client;
+        if (result == null)
+            return;
+
+        client = null;
+        result.dispatcher().executorService().shutdown();
+        result.connectionPool().evictAll();
+    }
+}
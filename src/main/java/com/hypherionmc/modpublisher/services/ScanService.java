@@ -0,0 +1,256 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.services;
+
+import com.hypherionmc.modpublisher.util.metadata.ModMetadata;
+import com.hypherionmc.modpublisher.util.metadata.ModMetadataReader;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import com.hypherionmc.modpublisher.util.scanner.ScanLimits;
+import com.hypherionmc.modpublisher.util.scanner.ScanOptions;
+import com.hypherionmc.modpublisher.util.scanner.ScanResult;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * @author HypherionSA
+ * Build wide service that reads the artifacts of all projects. Every jar is opened once per build, and that
+ * single pass produces everything the publish steps need: the malware scan, the entry index for the loader
+ * metadata checks, and the digests of the file. See {@link ArtifactInspection}.
+ * <p>
+ * Inspections that are running or done are keyed on the canonical path, size and modification time of the jar,
+ * and the options that affect the result, so when several platforms upload the same jar, every task gets the same
+ * inspection, and a jar that is rebuilt is inspected again. An inspection that is still running is waited on instead
+ * of started again. A scan is also registered for requests that only need the index and digests.
+ * <p>
+ * The jar is hashed in the same pass that indexes and scans it. A finished inspection is also registered under the
+ * SHA-256 of the jar, so a copy of the jar at another path, from another project for example, reuses the scan and
+ * index instead of running them again.
+ * <p>
+ * The mod metadata parsed from an inspection is cached on the same SHA-256, so the descriptors of a jar
+ * are parsed once, no matter how many tasks or copies of the jar need them.
+ * <p>
+ * The number of scans running at the same time is capped with {@link Parameters#getMaxParallelScans()},
+ * so parallel builds do not run a full set of scanner threads per project. Inspections without a scan
+ * are cheap, and are not capped.
+ */
+public abstract class ScanService implements BuildService<ScanService.Parameters> {
+
+    public interface Parameters extends BuildServiceParameters {
+        Property<Integer> getMaxParallelScans();
+    }
+
+    // Options key of inspections that only index and hash the jar
+    private static final String INDEX_ONLY = "index";
+
+    private final Map<String, CompletableFuture<ArtifactInspection>> inspections = new ConcurrentHashMap<>();
+    private final Map<String, ArtifactInspection> byContent = new ConcurrentHashMap<>();
+    private final Map<String, ModMetadata> metadata = new ConcurrentHashMap<>();
+    private volatile Semaphore scanPermits;
+
+    /**
+     * Scan a jar, or return the result of an earlier scan of the same jar
+     * @param jarFile The jar to scan
+     * @param options The settings to scan with
+     * @return The outcome of the scan
+     */
+    public ScanResult scan(File jarFile, ScanOptions options) throws IOException {
+        return scan(Collections.singletonList(jarFile), options).get(0);
+    }
+
+    /**
+     * Scan several jars at the same time. Jars that were already scanned, or are being scanned
+     * by another task, are not scanned again
+     * @param jarFiles The jars to scan
+     * @param options The settings to scan with
+     * @return The outcome of each scan, in the same order as the jars
+     */
+    public List<ScanResult> scan(List<File> jarFiles, ScanOptions options) throws IOException {
+        List<ScanResult> results = new ArrayList<>(jarFiles.size());
+        for (ArtifactInspection inspection : inspect(jarFiles, options)) {
+            results.add(inspection.getScanResult());
+        }
+        return results;
+    }
+
+    /**
+     * Inspect a jar, or return an earlier inspection of the same jar
+     * @param jarFile The jar to inspect
+     * @param options The settings to scan with, or null when only the entry index and digests are needed
+     * @return The inspection of the jar
+     */
+    public ArtifactInspection inspect(File jarFile, ScanOptions options) throws IOException {
+        return inspect(Collections.singletonList(jarFile), options).get(0);
+    }
+
+    /**
+     * Inspect several jars at the same time, see {@link #inspect(File, ScanOptions)}
+     * @param jarFiles The jars to inspect
+     * @param options The settings to scan with, or null when only the entry index and digests are needed
+     * @return The inspection of each jar, in the same order as the jars
+     */
+    public List<ArtifactInspection> inspect(List<File> jarFiles, ScanOptions options) throws IOException {
+        String optionsKey = options == null ? INDEX_ONLY : optionsKey(options);
+
+        List<CompletableFuture<ArtifactInspection>> futures = new ArrayList<>(jarFiles.size());
+        List<File> owned = new ArrayList<>();
+        List<String> ownedKeys = new ArrayList<>();
+        List<CompletableFuture<ArtifactInspection>> ownedFutures = new ArrayList<>();
+
+        for (File jarFile : jarFiles) {
+            // Cheap to compute, so a jar that is already being inspected is not read at all
+            String fileKey = fileKey(jarFile);
+
+            CompletableFuture<ArtifactInspection> future = new CompletableFuture<>();
+            CompletableFuture<ArtifactInspection> existing = inspections.putIfAbsent(fileKey + ":" + optionsKey, future);
+            if (existing != null) {
+                futures.add(existing);
+                continue;
+            }
+
+            // Any scan of the jar has the index and digests as well, so it also answers index only requests
+            if (options != null)
+                inspections.putIfAbsent(fileKey + ":" + INDEX_ONLY, future);
+
+            futures.add(future);
+            owned.add(jarFile);
+            ownedKeys.add(fileKey);
+            ownedFutures.add(future);
+        }
+
+        if (!owned.isEmpty()) {
+            try {
+                Function<String, ArtifactInspection> known = sha256 -> byContent.get(sha256 + ":" + optionsKey);
+                List<ArtifactInspection> inspected = options == null
+                        ? JarInfectionScanner.inspect(owned, null, known)
+                        : scanLimited(owned, options, known);
+
+                for (int i = 0; i < inspected.size(); i++) {
+                    ArtifactInspection inspection = inspected.get(i);
+                    String contentKey = inspection.getDigest(ArtifactInspection.SHA256);
+                    byContent.putIfAbsent(contentKey + ":" + optionsKey, inspection);
+                    if (options != null)
+                        byContent.putIfAbsent(contentKey + ":" + INDEX_ONLY, inspection);
+
+                    ownedFutures.get(i).complete(inspection);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Let the next task try again, instead of failing it with the same error
+                for (int i = 0; i < ownedFutures.size(); i++) {
+                    inspections.remove(ownedKeys.get(i) + ":" + optionsKey, ownedFutures.get(i));
+                    inspections.remove(ownedKeys.get(i) + ":" + INDEX_ONLY, ownedFutures.get(i));
+                    ownedFutures.get(i).completeExceptionally(e);
+                }
+                throw e;
+            }
+        }
+
+        List<ArtifactInspection> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<ArtifactInspection> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    /**
+     * Parse the mod descriptors of an inspected jar, or return the metadata of a jar with the same content
+     * @param inspection The inspection of the jar
+     * @return The metadata from the descriptors of the jar
+     * @throws IOException If one of the descriptors can not be parsed
+     */
+    public ModMetadata getMetadata(ArtifactInspection inspection) throws IOException {
+        String key = inspection.getDigest(ArtifactInspection.SHA256);
+        ModMetadata cached = metadata.get(key);
+        if (cached != null)
+            return cached;
+
+        // Parsing is cheap, so a race only costs a second parse of the same descriptors
+        ModMetadata parsed = ModMetadataReader.read(inspection);
+        cached = metadata.putIfAbsent(key, parsed);
+        return cached != null ? cached : parsed;
+    }
+
+    private List<ArtifactInspection> scanLimited(List<File> jarFiles, ScanOptions options, Function<String, ArtifactInspection> known) throws IOException {
+        Semaphore permits = permits();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a scan");
+        }
+
+        try {
+            return JarInfectionScanner.inspect(jarFiles, options, known);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Semaphore permits() {
+        Semaphore permits = scanPermits;
+        if (permits == null) {
+            synchronized (this) {
+                if (scanPermits == null)
+                    scanPermits = new Semaphore(Math.max(1, getParameters().getMaxParallelScans().getOrElse(1)));
+                permits = scanPermits;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Identifies a jar without reading it. A jar that is rebuilt changes in size or modification time
+     */
+    private static String fileKey(File jarFile) throws IOException {
+        return jarFile.getCanonicalPath() + ":" + jarFile.length() + ":" + jarFile.lastModified();
+    }
+
+    private static ArtifactInspection await(CompletableFuture<ArtifactInspection> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a scan");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Everything but the thread count and clean class store can change the result of a scan
+     */
+    private static String optionsKey(ScanOptions options) {
+        ScanLimits limits = options.getLimits();
+        return options.getSignatures().getVersion() +
+                ":" + options.getNestedJarDepth() +
+                ":" + options.isStopAtFirstFinding() +
+                ":" + options.isScanResources() +
+                ":" + limits.getMaxEntrySize() +
+                ":" + limits.getMaxCompressionRatio() +
+                ":" + limits.getMaxTotalSize() +
+                ":" + limits.getMaxClasses() +
+                ":" + limits.getTimeout().getSeconds();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.services;
+
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author HypherionSA
+ * Build wide service that hands the uploads of the platform tasks to their worker actions.
+ * <p>
+ * Worker actions only take managed parameters, while an upload needs the task that configured it.
+ * A task registers its upload here under its path, and the worker action it submits runs it.
+ */
+public abstract class UploadService implements BuildService<BuildServiceParameters.None> {
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * @param taskPath The path of the task the upload belongs to
+     * @param upload The upload, run once by {@link #run(String)}
+     */
+    public void register(String taskPath, Upload upload) {
+        uploads.put(taskPath, upload);
+    }
+
+    /**
+     * Run and forget the upload of a task
+     * @param taskPath The path of the task the upload belongs to
+     */
+    public void run(String taskPath) throws Exception {
+        Upload upload = uploads.remove(taskPath);
+        if (upload == null)
+            throw new IllegalStateException("No upload was registered for " + taskPath);
+
+        upload.run();
+    }
+
+    public interface Upload {
+        void run() throws Exception;
+    }
+}
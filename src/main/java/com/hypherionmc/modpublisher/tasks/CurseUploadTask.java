@@ -8,21 +8,23 @@ package com.hypherionmc.modpublisher.tasks;
 
 import com.hypherionmc.modpublisher.plugin.ModPublisherGradleExtension;
 import com.hypherionmc.modpublisher.properties.Platform;
+import com.hypherionmc.modpublisher.services.UploadService;
 import com.hypherionmc.modpublisher.util.CommonUtil;
 import com.hypherionmc.modpublisher.util.UploadPreChecks;
+import com.hypherionmc.modpublisher.util.metadata.ModMetadata;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
 import me.hypherionmc.curseupload.CurseUploadApi;
 import me.hypherionmc.curseupload.constants.CurseChangelogType;
 import me.hypherionmc.curseupload.constants.CurseReleaseType;
 import me.hypherionmc.curseupload.requests.CurseArtifact;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
-import org.gradle.api.DefaultTask;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.Project;
-import org.gradle.api.tasks.TaskAction;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -30,10 +32,8 @@ import java.util.regex.Pattern;
  * Sub-Task to handle Curseforge publishing. This task will only be executed if
  * a Curseforge API Key and Project ID is supplied
  */
-public class CurseUploadTask extends DefaultTask {
+public abstract class CurseUploadTask extends PlatformUploadTask {
 
-    // Instance of CurseUpload4J to use
-    private CurseUploadApi uploadApi;
     private final Pattern pattern = Pattern.compile("[A-Za-z0-9]+", Pattern.CASE_INSENSITIVE);
 
     private final Project project;
@@ -45,19 +45,24 @@ public class CurseUploadTask extends DefaultTask {
         this.extension = extension;
     }
 
+    @Override
+    public Platform getPlatform() {
+        return Platform.CURSEFORGE;
+    }
+
     /**
-     * Configure the upload and upload it
+     * Configure the upload. Only the upload itself runs on the worker
      */
-    @TaskAction
-    public void upload() throws Exception {
+    @Override
+    protected UploadService.Upload prepare() throws Exception {
         project.getLogger().lifecycle("Uploading to Curseforge");
         UploadPreChecks.checkRequiredValues(project, Platform.CURSEFORGE, extension);
         boolean canUpload = UploadPreChecks.canUploadCurse(project, extension);
         if (!canUpload)
-            return;
+            return null;
 
         // Create the API Client and pass the Gradle logger as logger
-        uploadApi = new CurseUploadApi(extension.getApiKeys().getCurseforge(), project.getLogger());
+        CurseUploadApi uploadApi = new CurseUploadApi(extension.getApiKeys().getCurseforge(), project.getLogger());
 
         // Enable debug mode if required
         uploadApi.setDebug(extension.getDebug().get());
@@ -67,8 +72,15 @@ public class CurseUploadTask extends DefaultTask {
         if (uploadFile == null || !uploadFile.exists())
             throw new FileNotFoundException("Cannot find file " + artifactObject);
 
+        ArtifactInspection inspection = getScanService().inspect(uploadFile, null);
+        project.getLogger().info("Uploading {} with SHA-256 {}", uploadFile.getName(), inspection.getDigest(ArtifactInspection.SHA256));
+        ModMetadata metadata = CommonUtil.resolveMetadata(project, extension, getScanService(), inspection);
+        List<String> loaders = CommonUtil.resolveLoaders(extension, metadata);
+        List<String> gameVersions = CommonUtil.resolveGameVersions(extension, metadata);
+        UploadPreChecks.checkGameVersions(gameVersions);
+
         CurseArtifact artifact = new CurseArtifact(uploadFile, Long.parseLong(extension.getCurseID().get()));
-        artifact.changelog(CommonUtil.resolveString(extension.getChangelog().get()));
+        artifact.changelog(CommonUtil.resolveString(extension.getChangelog().get(), getHttpClient()));
         artifact.changelogType(CurseChangelogType.MARKDOWN);
         artifact.releaseType(CurseReleaseType.valueOf(extension.getVersionType().get().toUpperCase()));
 
@@ -76,7 +88,7 @@ public class CurseUploadTask extends DefaultTask {
         // Just kidding CDA. But seriously, you have way too much free time
 
         // Compare if MC version is below b1.6.6, as the lowest curse supports is b1.6.6
-        for (String gameVersion : extension.getGameVersions().get()) {
+        for (String gameVersion : gameVersions) {
             if (pattern.matcher(gameVersion).matches())
                 continue;
 
@@ -99,7 +111,7 @@ public class CurseUploadTask extends DefaultTask {
             }
         }
 
-        for (String modLoader : extension.getLoaders().get()) {
+        for (String modLoader : loaders) {
 
             // Replace `modloader` with `risugamis-modloader`
             if (modLoader.equalsIgnoreCase("modloader")) {
@@ -151,16 +163,16 @@ public class CurseUploadTask extends DefaultTask {
 
         if (extension.getAdditionalFiles().isPresent()) {
             for (ModPublisherGradleExtension.AdditionalFile file : extension.getAdditionalFiles().get()) {
-                String changelog = file.getChangelog() == null ? null : CommonUtil.resolveString(file.getChangelog());
+                String changelog = file.getChangelog() == null ? null : CommonUtil.resolveString(file.getChangelog(), getHttpClient());
                artifact.addAdditionalFile(CommonUtil.resolveFile(project, file.getArtifact()), file.getDisplayName(), changelog);
             }
         }
 
-        UploadPreChecks.checkEmptyJar(extension, uploadFile, extension.getLoaders().get());
+        UploadPreChecks.checkEmptyJar(extension, inspection, loaders);
 
         // If debug mode is enabled, this will only log the JSON that will be sent and
         // will not actually upload the file
-        uploadApi.upload(artifact);
+        return () -> uploadApi.upload(artifact);
     }
 
 }
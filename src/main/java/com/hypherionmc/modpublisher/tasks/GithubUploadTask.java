@@ -8,13 +8,14 @@ package com.hypherionmc.modpublisher.tasks;
 
 import com.hypherionmc.modpublisher.plugin.ModPublisherGradleExtension;
 import com.hypherionmc.modpublisher.properties.Platform;
+import com.hypherionmc.modpublisher.services.UploadService;
 import com.hypherionmc.modpublisher.util.CommonUtil;
 import com.hypherionmc.modpublisher.util.UploadPreChecks;
-import com.hypherionmc.modpublisher.util.UserAgentInterceptor;
+import com.hypherionmc.modpublisher.util.metadata.ModMetadata;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
 import okhttp3.OkHttpClient;
-import org.gradle.api.DefaultTask;
 import org.gradle.api.Project;
-import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.logging.Logger;
 import org.kohsuke.github.*;
 import org.kohsuke.github.extras.okhttp3.OkHttpGitHubConnector;
 
@@ -22,16 +23,20 @@ import javax.inject.Inject;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 /**
  * @author HypherionSA
  * Sub-Task to handle GitHub publishing. This task will only be executed if
  * an GitHub API Key and repo is supplied
  */
-public class GithubUploadTask extends DefaultTask {
-
-    // Instance of HUB4J to handle GitHub API communications
-    private GitHub gitHub;
+public abstract class GithubUploadTask extends PlatformUploadTask {
 
     private final Project project;
     private final ModPublisherGradleExtension extension;
@@ -42,29 +47,21 @@ public class GithubUploadTask extends DefaultTask {
         this.extension = extension;
     }
 
+    @Override
+    public Platform getPlatform() {
+        return Platform.GITHUB;
+    }
+
     /**
-     * Configure the upload and upload it
+     * Configure the upload. Only the calls to the GitHub API run on the worker
      */
-    @TaskAction
-    public void upload() throws Exception {
+    @Override
+    protected UploadService.Upload prepare() throws Exception {
         project.getLogger().lifecycle("Uploading to GitHub");
         UploadPreChecks.checkRequiredValues(project, Platform.GITHUB, extension);
         boolean canUpload = UploadPreChecks.canUploadGitHub(project, extension);
         if (!canUpload)
-            return;
-
-        // Create an HTTP Client with UserAgent and longer timeouts
-        OkHttpClient client = new OkHttpClient().newBuilder()
-                .callTimeout(1, TimeUnit.MINUTES)
-                .connectTimeout(1, TimeUnit.MINUTES)
-                .addNetworkInterceptor(new UserAgentInterceptor("modpublisher/v1 (https://github.com/firstdarkdev/modpublisher)"))
-                .build();
-
-        // Try to instantiate the GitHub API.
-        // Will throw an error if the Token is invalid
-        gitHub = new GitHubBuilder()
-                .withOAuthToken(extension.getApiKeys().getGithub())
-                .withConnector(new OkHttpGitHubConnector(client)).build();
+            return null;
 
         Object artifactObject = CommonUtil.getPlatformArtifact(Platform.GITHUB, extension);
         File uploadFile = CommonUtil.resolveFile(project, artifactObject);
@@ -72,68 +69,136 @@ public class GithubUploadTask extends DefaultTask {
         if (uploadFile == null || !uploadFile.exists())
             throw new FileNotFoundException("Cannot find file " + artifactObject);
 
-        if (gitHub == null)
-            return;
+        ArtifactInspection inspection = getScanService().inspect(uploadFile, null);
+        project.getLogger().info("Uploading {} with SHA-256 {}", uploadFile.getName(), inspection.getDigest(ArtifactInspection.SHA256));
+        ModMetadata metadata = CommonUtil.resolveMetadata(project, extension, getScanService(), inspection);
+        List<String> loaders = CommonUtil.resolveLoaders(extension, metadata);
 
         // Debug Mode. Return early to prevent any API calls that will result in anything
         // being created or uploaded
         if (extension.getDebug().get()) {
             project.getLogger().lifecycle("Debug mode is enabled. Not uploading to github");
-            return;
+            return null;
         }
 
+        UploadPreChecks.checkEmptyJar(extension, inspection, loaders);
+
+        final Logger logger = project.getLogger();
+        final OkHttpClient httpClient = getHttpClient();
+        final String token = extension.getApiKeys().getGithub();
         final String uploadRepo = CommonUtil.cleanGithubUrl(extension.getGithubRepo().get());
+        final String version = extension.getVersion().get();
+        final String releaseName = extension.getDisplayName().isPresent() && !extension.getDisplayName().get().isEmpty()
+                ? extension.getDisplayName().get()
+                : version;
+        final String changelog = CommonUtil.resolveString(extension.getChangelog().get(), httpClient);
+        final boolean prerelease = extension.getVersionType().get().equalsIgnoreCase("beta") || extension.getVersionType().get().equalsIgnoreCase("alpha");
+        final int maxParallelUploads = extension.getGithubMaxParallelUploads().get();
+
+        final List<File> additionalFiles = new ArrayList<>();
+        if (extension.getAdditionalFiles().isPresent()) {
+            for (ModPublisherGradleExtension.AdditionalFile file : extension.getAdditionalFiles().get()) {
+                additionalFiles.add(CommonUtil.resolveFile(project, file.getArtifact()));
+            }
+        }
 
-        GHRepository ghRepository = gitHub.getRepository(uploadRepo);
+        return () -> {
+            // Try to instantiate the GitHub API, on the HTTP client of the build.
+            // Will throw an error if the Token is invalid
+            GitHub gitHub = new GitHubBuilder()
+                    .withOAuthToken(token)
+                    .withConnector(new OkHttpGitHubConnector(httpClient)).build();
+
+            GHRepository ghRepository = gitHub.getRepository(uploadRepo);
+
+            // Try to find an existing release.
+            // If one is found, the file will be added onto it.
+            GHRelease ghRelease = ghRepository.getReleaseByTagName(version);
+
+            // Existing release was not found, so we create a new one
+            if (ghRelease == null) {
+                GHReleaseBuilder releaseBuilder = new GHReleaseBuilder(ghRepository, version);
+                releaseBuilder.name(releaseName);
+                releaseBuilder.body(changelog);
+                releaseBuilder.draft(true);
+                releaseBuilder.commitish(ghRepository.getDefaultBranch());
+                ghRelease = releaseBuilder.create();
+            }
 
-        // Try to find an existing release.
-        // If one is found, the file will be added onto it.
-        GHRelease ghRelease = ghRepository.getReleaseByTagName(extension.getVersion().get());
+            if (ghRelease == null)
+                throw new NullPointerException("Could not get existing or create new Github Release with tag " + version);
 
-        UploadPreChecks.checkEmptyJar(extension, uploadFile, extension.getLoaders().get());
+            GHAsset asset = ghRelease.uploadAsset(uploadFile, "application/octet-stream");
 
-        // Existing release was not found, so we create a new one
-        if (ghRelease == null) {
-            GHReleaseBuilder releaseBuilder = new GHReleaseBuilder(ghRepository, extension.getVersion().get());
+            if (asset == null)
+                throw new IOException("Failed to upload release to github. No error found");
 
-            if (extension.getDisplayName().isPresent() && !extension.getDisplayName().get().isEmpty()) {
-                releaseBuilder.name(extension.getDisplayName().get());
-            } else {
-                releaseBuilder.name(extension.getVersion().get());
-            }
+            uploadAssets(ghRelease, additionalFiles, maxParallelUploads);
 
-            releaseBuilder.body(CommonUtil.resolveString(extension.getChangelog().get()));
-            releaseBuilder.draft(true);
-            releaseBuilder.commitish(ghRepository.getDefaultBranch());
-            ghRelease = releaseBuilder.create();
-        }
+            // Mark Release as PRE-RELEASE if alpha or beta
+            // Actually publish the release if a brand new one was created
+            GHReleaseUpdater releaseUpdater = ghRelease.update();
+            releaseUpdater.prerelease(prerelease);
+            releaseUpdater.draft(false);
+            releaseUpdater.update();
 
-        if (ghRelease == null)
-            throw new NullPointerException("Could not get existing or create new Github Release with tag " +  extension.getVersion().get());
+            logger.lifecycle(
+                    "Successfully uploaded version {} to {}. {}.",
+                    version,
+                    ghRepository.getUrl().toString(),
+                    ghRelease.getHtmlUrl().toString()
+            );
+        };
+    }
+
+    /**
+     * Upload several assets to a release at the same time
+     * @param release The release to add the assets to
+     * @param files The files to upload
+     * @param maxParallel The maximum number of uploads running at the same time
+     */
+    private static void uploadAssets(GHRelease release, List<File> files, int maxParallel) throws Exception {
+        if (files.isEmpty())
+            return;
 
-        GHAsset asset = ghRelease.uploadAsset(uploadFile, "application/octet-stream");
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            order.add(i);
+        }
 
-        if (asset == null)
-            throw new IOException("Failed to upload release to github. No error found");
+        // Largest files first, so the upload that finishes last is a small one. GitHub lists the assets in the order the
+        // uploads finish, which varies between runs, so only a single upload at a time keeps the configured order
+        if (maxParallel > 1)
+            order.sort(Comparator.comparingLong((Integer i) -> files.get(i).length()).reversed().thenComparing(i -> files.get(i).getName()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxParallel, files.size())), runnable -> {
+            Thread thread = new Thread(runnable, "modpublisher-github-upload");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<GHAsset>> uploads = new ArrayList<>(Collections.nCopies(files.size(), null));
+        List<String> failures = new ArrayList<>();
+        try {
+            for (int i : order) {
+                File file = files.get(i);
+                uploads.set(i, executor.submit(() -> release.uploadAsset(file, "application/octet-stream")));
+            }
 
-        if (extension.getAdditionalFiles().isPresent()) {
-            for (ModPublisherGradleExtension.AdditionalFile file : extension.getAdditionalFiles().get()) {
-                ghRelease.uploadAsset(CommonUtil.resolveFile(project, file.getArtifact()), "application/octet-stream");
+            // Results are reported in the order the files were configured in
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    if (uploads.get(i).get() == null)
+                        failures.add(files.get(i).getName() + ": No error found");
+                } catch (ExecutionException e) {
+                    failures.add(files.get(i).getName() + ": " + e.getCause().getMessage());
+                }
             }
+        } finally {
+            executor.shutdownNow();
         }
 
-        // Mark Release as PRE-RELEASE if alpha or beta
-        // Actually publish the release if a brand new one was created
-        GHReleaseUpdater releaseUpdater = ghRelease.update();
-        releaseUpdater.prerelease(extension.getVersionType().get().equalsIgnoreCase("beta") || extension.getVersionType().get().equalsIgnoreCase("alpha"));
-        releaseUpdater.draft(false);
-        releaseUpdater.update();
-
-        project.getLogger().lifecycle(
-                "Successfully uploaded version {} to {}. {}.",
-                extension.getVersion().get(),
-                ghRepository.getUrl().toString(),
-                ghRelease.getHtmlUrl().toString()
-        );
+        if (!failures.isEmpty())
+            throw new IOException("Failed to upload " + failures.size() + " additional files to github\n" + String.join("\n", failures));
     }
 }
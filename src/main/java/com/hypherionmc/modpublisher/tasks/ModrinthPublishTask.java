@@ -11,32 +11,36 @@ import com.google.gson.GsonBuilder;
 import com.hypherionmc.modpublisher.Constants;
 import com.hypherionmc.modpublisher.plugin.ModPublisherGradleExtension;
 import com.hypherionmc.modpublisher.properties.Platform;
+import com.hypherionmc.modpublisher.services.UploadService;
 import com.hypherionmc.modpublisher.util.CommonUtil;
+import com.hypherionmc.modpublisher.util.ModrinthProjectResolver;
+import com.hypherionmc.modpublisher.util.ProjectIdCache;
 import com.hypherionmc.modpublisher.util.UploadPreChecks;
+import com.hypherionmc.modpublisher.util.metadata.ModMetadata;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
 import masecla.modrinth4j.client.agent.UserAgent;
 import masecla.modrinth4j.endpoints.version.CreateVersion;
 import masecla.modrinth4j.main.ModrinthAPI;
 import masecla.modrinth4j.model.version.ProjectVersion;
-import org.gradle.api.DefaultTask;
 import org.gradle.api.Project;
-import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.logging.Logger;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author HypherionSA
  * Sub-Task to handle Modrinth publishing. This task will only be executed if
  * a Modrinth API Key and Project ID is supplied
  */
-public class ModrinthPublishTask extends DefaultTask {
-
-    // Instance of Modrinth4J that will be used
-    private ModrinthAPI modrinthAPI;
+public abstract class ModrinthPublishTask extends PlatformUploadTask {
 
     private final Project project;
     private final ModPublisherGradleExtension extension;
@@ -47,16 +51,21 @@ public class ModrinthPublishTask extends DefaultTask {
         this.extension = extension;
     }
 
+    @Override
+    public Platform getPlatform() {
+        return Platform.MODRINTH;
+    }
+
     /**
-     * Configure the upload and upload it
+     * Configure the upload. The project IDs are looked up while the task action finishes, and the upload waits for them on the worker
      */
-    @TaskAction
-    public void upload() throws Exception {
+    @Override
+    protected UploadService.Upload prepare() throws Exception {
         project.getLogger().lifecycle("Uploading to Modrinth");
         UploadPreChecks.checkRequiredValues(project, Platform.MODRINTH, extension);
         boolean canUpload = UploadPreChecks.canUploadModrinth(project, extension);
         if (!canUpload)
-            return;
+            return null;
 
         // Required User Agent
         UserAgent.UserAgentBuilder userAgent = UserAgent.builder();
@@ -66,7 +75,8 @@ public class ModrinthPublishTask extends DefaultTask {
         userAgent.projectVersion("v1");
 
         // Create the API Client
-        modrinthAPI = ModrinthAPI.rateLimited(userAgent.build(), extension.getUseModrinthStaging().get() ? Constants.MODRINTH_STAGING_API : Constants.MODRINTH_API, extension.getApiKeys().getModrinth());
+        String apiBase = extension.getUseModrinthStaging().get() ? Constants.MODRINTH_STAGING_API : Constants.MODRINTH_API;
+        ModrinthAPI modrinthAPI = ModrinthAPI.rateLimited(userAgent.build(), apiBase, extension.getApiKeys().getModrinth());
 
         Object artifactObject = CommonUtil.getPlatformArtifact(Platform.MODRINTH, extension);
         File uploadFile = CommonUtil.resolveFile(project, artifactObject);
@@ -74,10 +84,37 @@ public class ModrinthPublishTask extends DefaultTask {
         if (uploadFile == null || !uploadFile.exists())
             throw new FileNotFoundException("Cannot find file " + artifactObject);
 
+        ArtifactInspection inspection = getScanService().inspect(uploadFile, null);
+        project.getLogger().info("Uploading {} with SHA-256 {}", uploadFile.getName(), inspection.getDigest(ArtifactInspection.SHA256));
+        ModMetadata metadata = CommonUtil.resolveMetadata(project, extension, getScanService(), inspection);
+        List<String> loaders = CommonUtil.resolveLoaders(extension, metadata);
+        List<String> gameVersions = CommonUtil.resolveGameVersions(extension, metadata);
+        UploadPreChecks.checkGameVersions(gameVersions);
+
+        // Copies of the configured dependencies, the worker does not read the extension
+        final String modrinthId = extension.getModrinthID().get();
+        final boolean hasDepends = extension.getModrinthDepends() != null;
+        final List<String> required = hasDepends ? new ArrayList<>(extension.getModrinthDepends().getRequired().get()) : new ArrayList<>();
+        final List<String> optional = hasDepends ? new ArrayList<>(extension.getModrinthDepends().getOptional().get()) : new ArrayList<>();
+        final List<String> incompatible = hasDepends ? new ArrayList<>(extension.getModrinthDepends().getIncompatible().get()) : new ArrayList<>();
+        final List<String> embedded = hasDepends ? new ArrayList<>(extension.getModrinthDepends().getEmbedded().get()) : new ArrayList<>();
+
+        // Required mods from the descriptors, when none are configured
+        final List<String> inferred = hasDepends && required.isEmpty() ? new ArrayList<>(metadata.getRequiredDependencies()) : new ArrayList<>();
+
+        // Look up the project and all dependencies with a single request
+        List<String> slugs = new ArrayList<>();
+        slugs.add(modrinthId);
+        slugs.addAll(required);
+        slugs.addAll(optional);
+        slugs.addAll(incompatible);
+        slugs.addAll(embedded);
+        slugs.addAll(inferred);
+        final CompletableFuture<Map<String, String>> projectIdLookup = resolveSlugs(apiBase, slugs);
+
         final List<File> uploadFiles = new ArrayList<>();
         CreateVersion.CreateVersionRequest.CreateVersionRequestBuilder builder = CreateVersion.CreateVersionRequest.builder();
-        builder.projectId(resolveSlug(modrinthAPI, extension.getModrinthID().get()));
-        builder.changelog(CommonUtil.resolveString(extension.getChangelog().get()));
+        builder.changelog(CommonUtil.resolveString(extension.getChangelog().get(), getHttpClient()));
         builder.versionType(ProjectVersion.VersionType.valueOf(extension.getVersionType().get().toUpperCase()));
         builder.versionNumber(extension.getVersion().get());
         uploadFiles.add(uploadFile);
@@ -89,7 +126,7 @@ public class ModrinthPublishTask extends DefaultTask {
         }
 
         List<String> finalGameVersions = new ArrayList<>();
-        for (String gameVersion : extension.getGameVersions().get()) {
+        for (String gameVersion : gameVersions) {
             if (gameVersion.endsWith("-snapshot"))
                 continue;
             finalGameVersions.add(gameVersion);
@@ -98,7 +135,7 @@ public class ModrinthPublishTask extends DefaultTask {
         builder.gameVersions(finalGameVersions);
 
         List<String> finalLoaders = new ArrayList<>();
-        for (String loader : extension.getLoaders().get()) {
+        for (String loader : loaders) {
             if (loader.equalsIgnoreCase("risugami's modloader")) {
                 if (!finalLoaders.contains("modloader"))
                     finalLoaders.add("modloader");
@@ -111,41 +148,6 @@ public class ModrinthPublishTask extends DefaultTask {
         if (!finalLoaders.isEmpty())
             builder.loaders(finalLoaders);
 
-        if (extension.getModrinthDepends() != null) {
-            List<ProjectVersion.ProjectDependency> dependencies = new ArrayList<>();
-            extension.getModrinthDepends().getRequired().get().forEach(rd -> {
-                ProjectVersion.ProjectDependency dependency = new ProjectVersion.ProjectDependency();
-                dependency.setProjectId(resolveSlug(modrinthAPI, rd));
-                dependency.setDependencyType(ProjectVersion.ProjectDependencyType.REQUIRED);
-                dependencies.add(dependency);
-            });
-
-            extension.getModrinthDepends().getOptional().get().forEach(od -> {
-                ProjectVersion.ProjectDependency dependency = new ProjectVersion.ProjectDependency();
-                dependency.setProjectId(resolveSlug(modrinthAPI, od));
-                dependency.setDependencyType(ProjectVersion.ProjectDependencyType.OPTIONAL);
-                dependencies.add(dependency);
-            });
-
-            extension.getModrinthDepends().getIncompatible().get().forEach(id -> {
-                ProjectVersion.ProjectDependency dependency = new ProjectVersion.ProjectDependency();
-                dependency.setProjectId(resolveSlug(modrinthAPI, id));
-                dependency.setDependencyType(ProjectVersion.ProjectDependencyType.INCOMPATIBLE);
-                dependencies.add(dependency);
-            });
-
-            extension.getModrinthDepends().getEmbedded().get().forEach(ed -> {
-                ProjectVersion.ProjectDependency dependency = new ProjectVersion.ProjectDependency();
-                dependency.setProjectId(resolveSlug(modrinthAPI, ed));
-                dependency.setDependencyType(ProjectVersion.ProjectDependencyType.EMBEDDED);
-                dependencies.add(dependency);
-            });
-
-            if (!dependencies.isEmpty()) {
-                builder.dependencies(dependencies);
-            }
-        }
-
         if (extension.getAdditionalFiles().isPresent()) {
             for (ModPublisherGradleExtension.AdditionalFile file : extension.getAdditionalFiles().get()) {
                 uploadFiles.add(CommonUtil.resolveFile(project, file.getArtifact()));
@@ -153,28 +155,83 @@ public class ModrinthPublishTask extends DefaultTask {
         }
         builder.files(uploadFiles);
 
-        // Debug mode, so we do not upload the file
-        if (extension.getDebug().get()) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            project.getLogger().lifecycle("Full data to be sent for upload: {}", gson.toJson(builder.build()));
-            return;
-        }
+        final boolean debug = extension.getDebug().get();
+        if (!debug)
+            UploadPreChecks.checkEmptyJar(extension, inspection, loaders);
+
+        final Logger logger = project.getLogger();
+
+        return () -> {
+            Map<String, String> projectIds = await(projectIdLookup);
+            builder.projectId(resolveSlug(projectIds, modrinthId));
+
+            if (hasDepends) {
+                List<ProjectVersion.ProjectDependency> dependencies = new ArrayList<>();
+                required.forEach(rd -> dependencies.add(dependency(resolveSlug(projectIds, rd), ProjectVersion.ProjectDependencyType.REQUIRED)));
+
+                // Mod ids are not always project slugs, so only ids that are the slug of a project are used.
+                // An id that only matches the ID of a project is a coincidence
+                for (String id : inferred) {
+                    String projectId = projectIds.get(id);
+                    if (projectId == null || projectId.equals(id)) {
+                        logger.warn("Required dependency {} from the mod descriptors is not the slug of a Modrinth project, add it to modrinthDepends if it should be listed", id);
+                        continue;
+                    }
+
+                    logger.lifecycle("Adding required dependency {} (Modrinth project {}) from the mod descriptors", id, projectId);
+                    dependencies.add(dependency(projectId, ProjectVersion.ProjectDependencyType.REQUIRED));
+                }
 
-        UploadPreChecks.checkEmptyJar(extension, uploadFile, extension.getLoaders().get());
-        ProjectVersion projectVersion = modrinthAPI.versions().createProjectVersion(builder.build()).join();
+                optional.forEach(od -> dependencies.add(dependency(resolveSlug(projectIds, od), ProjectVersion.ProjectDependencyType.OPTIONAL)));
+                incompatible.forEach(id -> dependencies.add(dependency(resolveSlug(projectIds, id), ProjectVersion.ProjectDependencyType.INCOMPATIBLE)));
+                embedded.forEach(ed -> dependencies.add(dependency(resolveSlug(projectIds, ed), ProjectVersion.ProjectDependencyType.EMBEDDED)));
+
+                if (!dependencies.isEmpty()) {
+                    builder.dependencies(dependencies);
+                }
+            }
+
+            // Debug mode, so we do not upload the file
+            if (debug) {
+                Gson gson = new GsonBuilder().setPrettyPrinting().create();
+                logger.lifecycle("Full data to be sent for upload: {}", gson.toJson(builder.build()));
+                return;
+            }
+
+            ProjectVersion projectVersion = modrinthAPI.versions().createProjectVersion(builder.build()).join();
+
+            logger.lifecycle(
+                    "Successfully uploaded version {} to {} as version ID {}.",
+                    projectVersion.getVersionNumber(),
+                    modrinthId,
+                    projectVersion.getId()
+            );
+        };
+    }
+
+    private CompletableFuture<Map<String, String>> resolveSlugs(String apiBase, List<String> slugs) throws Exception {
+        ProjectIdCache cache = ProjectIdCache.open(new File(project.getGradle().getGradleUserHomeDir(), "caches/modpublisher/project-ids.bin"), ProjectIdCache.DEFAULT_TTL);
+        ModrinthProjectResolver resolver = new ModrinthProjectResolver(getHttpClient(), apiBase, extension.getApiKeys().getModrinth(), cache);
+        return resolver.resolve(slugs);
+    }
+
+    private static Map<String, String> await(CompletableFuture<Map<String, String>> projectIds) throws Exception {
+        try {
+            return projectIds.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
 
-        project.getLogger().lifecycle(
-                "Successfully uploaded version {} to {} as version ID {}.",
-                projectVersion.getVersionNumber(),
-                extension.getModrinthID().get(),
-                projectVersion.getId()
-        );
+    private static ProjectVersion.ProjectDependency dependency(String projectId, ProjectVersion.ProjectDependencyType type) {
+        ProjectVersion.ProjectDependency dependency = new ProjectVersion.ProjectDependency();
+        dependency.setProjectId(projectId);
+        dependency.setDependencyType(type);
+        return dependency;
     }
 
-    private String resolveSlug(ModrinthAPI api, String slug) {
-        return Objects.requireNonNull(
-                api.projects().getProjectIdBySlug(slug).join(),
-                "Failed to resolve project ID: " + slug);
+    private static String resolveSlug(Map<String, String> projectIds, String slug) {
+        return Objects.requireNonNull(projectIds.get(slug), "Failed to resolve project ID: " + slug);
     }
 
 }
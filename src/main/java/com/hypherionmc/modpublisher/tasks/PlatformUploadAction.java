@@ -0,0 +1,36 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.tasks;
+
+import com.hypherionmc.modpublisher.services.UploadService;
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * @author HypherionSA
+ * Runs the upload of a {@link PlatformUploadTask} on a Gradle worker thread
+ */
+public abstract class PlatformUploadAction implements WorkAction<PlatformUploadAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        Property<UploadService> getUploadService();
+        Property<String> getTaskPath();
+    }
+
+    @Override
+    public void execute() {
+        try {
+            getParameters().getUploadService().get().run(getParameters().getTaskPath().get());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GradleException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.tasks;
+
+import com.hypherionmc.modpublisher.properties.Platform;
+import com.hypherionmc.modpublisher.services.HttpClientService;
+import com.hypherionmc.modpublisher.services.ScanService;
+import com.hypherionmc.modpublisher.services.UploadService;
+import okhttp3.OkHttpClient;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
+
+/**
+ * @author HypherionSA
+ * Base of the tasks that upload to a single platform.
+ * <p>
+ * The upload runs on a Gradle worker, so Gradle can run the uploads to the other platforms,
+ * and any other task, while it waits on the network. The task finishes when the upload does.
+ * All values of the project and extension are resolved in the task action, before the upload is
+ * handed to the worker, so the worker thread never reads project state.
+ */
+public abstract class PlatformUploadTask extends DefaultTask {
+
+    // Hands the upload to the worker action
+    private Provider<UploadService> uploadService;
+
+    // Reads the upload file once for the pre-checks, or reuses the scan of it
+    private Provider<ScanService> scanService;
+
+    // Shares connections with the other platforms and projects in the build
+    private Provider<HttpClientService> httpService;
+
+    /**
+     * @return The platform this task uploads to
+     */
+    @Internal
+    public abstract Platform getPlatform();
+
+    /**
+     * Resolve everything the upload needs and run the pre-checks. This runs in the task action. The upload it returns
+     * runs on a worker thread, so it may only use the values resolved here, never the project, the extension or the task
+     * @return The upload, or null when there is nothing to upload
+     */
+    protected abstract UploadService.Upload prepare() throws Exception;
+
+    public void setScanService(Provider<ScanService> scanService) {
+        this.scanService = scanService;
+    }
+
+    /**
+     * @return The service that inspects the upload file
+     */
+    @Internal
+    public ScanService getScanService() {
+        return scanService.get();
+    }
+
+    public void setHttpService(Provider<HttpClientService> httpService) {
+        this.httpService = httpService;
+    }
+
+    /**
+     * @return The HTTP client shared by the whole build
+     */
+    @Internal
+    public OkHttpClient getHttpClient() {
+        return httpService.get().getClient();
+    }
+
+    public void setUploadService(Provider<UploadService> uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    /**
+     * Upload to the platform on a worker thread
+     */
+    @TaskAction
+    public void upload() throws Exception {
+        UploadService.Upload upload = prepare();
+        if (upload == null)
+            return;
+
+        String taskPath = getPath();
+        uploadService.get().register(taskPath, upload);
+
+        getWorkerExecutor().noIsolation().submit(PlatformUploadAction.class, parameters -> {
+            parameters.getUploadService().set(uploadService);
+            parameters.getTaskPath().set(taskPath);
+        });
+    }
+}
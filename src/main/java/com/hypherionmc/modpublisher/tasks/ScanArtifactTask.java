@@ -0,0 +1,253 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.tasks;
+
+import com.hypherionmc.modpublisher.services.ScanService;
+import com.hypherionmc.modpublisher.util.scanner.CleanClassStore;
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import com.hypherionmc.modpublisher.util.scanner.ResourceFinding;
+import com.hypherionmc.modpublisher.util.scanner.ScanLimits;
+import com.hypherionmc.modpublisher.util.scanner.ScanOptions;
+import com.hypherionmc.modpublisher.util.scanner.ScanReport;
+import com.hypherionmc.modpublisher.util.scanner.ScanResult;
+import com.hypherionmc.modpublisher.util.scanner.ScanStatistics;
+import com.hypherionmc.modpublisher.util.scanner.SignatureDatabase;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author HypherionSA
+ * Scans an upload artifact, and any additional jars uploaded with it, for the presence of fractureiser.
+ * <p>
+ * The task is keyed on the content of the artifact and of the signature set, so
+ * with the Gradle build cache enabled, a jar that was already found clean on any machine
+ * sharing the cache is not scanned again. Infected jars, and jars that hit one of the scan limits,
+ * fail the task, so only clean results are ever stored.
+ */
+@CacheableTask
+public abstract class ScanArtifactTask extends DefaultTask {
+
+    /**
+     * @return The jar to scan. Only its content is part of the cache key
+     */
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getArtifact();
+
+    /**
+     * @return Additional files uploaded next to the artifact. Jars among them are scanned together with the artifact
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract ConfigurableFileCollection getAdditionalFiles();
+
+    /**
+     * @return The version of the bundled signature set
+     */
+    @Input
+    public abstract Property<String> getSignatureVersion();
+
+    /**
+     * @return Custom signature database to scan with, instead of the bundled signatures
+     */
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSignatureDatabase();
+
+    /**
+     * @return How deep nested jars are scanned. 0 skips nested jars
+     */
+    @Input
+    public abstract Property<Integer> getNestedJarDepth();
+
+    /**
+     * @return Whether resources are inspected for encoded payloads. Anything found is logged as a warning, and does not fail the task
+     */
+    @Input
+    public abstract Property<Boolean> getScanResources();
+
+    /**
+     * @return The maximum inflated size of a single entry, in bytes
+     */
+    @Input
+    public abstract Property<Long> getMaxEntrySize();
+
+    /**
+     * @return The maximum ratio between the inflated and compressed size of an entry
+     */
+    @Input
+    public abstract Property<Integer> getMaxCompressionRatio();
+
+    /**
+     * @return The maximum number of bytes inflated over the whole scan
+     */
+    @Input
+    public abstract Property<Long> getMaxTotalSize();
+
+    /**
+     * @return The maximum number of classes in the jar, including nested jars
+     */
+    @Input
+    public abstract Property<Integer> getMaxClasses();
+
+    /**
+     * @return How long the scan may take, in seconds. A jar that times out is never cached as clean
+     */
+    @Internal
+    public abstract Property<Integer> getScanTimeout();
+
+    /**
+     * @return Number of threads to scan with. This has no effect on the result
+     */
+    @Internal
+    public abstract Property<Integer> getScannerThreads();
+
+    /**
+     * @return Store of classes that were already found clean. When set, those classes are skipped
+     */
+    @Internal
+    public abstract RegularFileProperty getCleanClassCache();
+
+    /**
+     * @return The maximum number of classes to keep in the clean class store
+     */
+    @Internal
+    public abstract Property<Integer> getCleanClassCacheSize();
+
+    /**
+     * @return The service that runs the scan, so a jar is only scanned once per build. When not set, the task scans on its own
+     */
+    @Internal
+    public abstract Property<ScanService> getScanService();
+
+    /**
+     * @return The directory the JSON report of each scanned jar is written to. Reports are also written when a jar is infected
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getReportDirectory();
+
+    public ScanArtifactTask() {
+        getSignatureVersion().convention(JarInfectionScanner.SIGNATURE_VERSION);
+        getNestedJarDepth().convention(3);
+        getScanResources().convention(false);
+        getScannerThreads().convention(Runtime.getRuntime().availableProcessors());
+        getCleanClassCacheSize().convention(100_000);
+
+        ScanLimits limits = new ScanLimits();
+        getMaxEntrySize().convention(limits.getMaxEntrySize());
+        getMaxCompressionRatio().convention(limits.getMaxCompressionRatio());
+        getMaxTotalSize().convention(limits.getMaxTotalSize());
+        getMaxClasses().convention((int) limits.getMaxClasses());
+        getScanTimeout().convention((int) limits.getTimeout().getSeconds());
+    }
+
+    @TaskAction
+    public void scan() throws Exception {
+        List<File> jarFiles = new ArrayList<>();
+        jarFiles.add(getArtifact().get().getAsFile());
+        for (File file : getAdditionalFiles().getFiles()) {
+            if (file.getName().endsWith(".jar")) {
+                jarFiles.add(file);
+            } else {
+                getLogger().info("Not scanning additional file {}, it is not a jar", file.getName());
+            }
+        }
+
+        for (File jarFile : jarFiles) {
+            getLogger().lifecycle("Scanning {} for presence of fractureiser", jarFile.getAbsolutePath());
+        }
+
+        SignatureDatabase signatures = getSignatureDatabase().isPresent()
+                ? SignatureDatabase.load(getSignatureDatabase().get().getAsFile())
+                : SignatureDatabase.bundled();
+
+        ScanOptions options = new ScanOptions()
+                .threads(getScannerThreads().get())
+                .nestedJarDepth(getNestedJarDepth().get())
+                .signatures(signatures)
+                .stopAtFirstFinding(false)
+                .scanResources(getScanResources().get())
+                .limits(new ScanLimits()
+                        .maxEntrySize(getMaxEntrySize().get())
+                        .maxCompressionRatio(getMaxCompressionRatio().get())
+                        .maxTotalSize(getMaxTotalSize().get())
+                        .maxClasses(getMaxClasses().get())
+                        .timeout(Duration.ofSeconds(getScanTimeout().get())));
+        if (getCleanClassCache().isPresent())
+            options.cleanClassStore(CleanClassStore.open(getCleanClassCache().get().getAsFile(), getCleanClassCacheSize().get()));
+
+        // All jars are scanned at the same time, so the largest one decides how long this takes
+        List<ScanResult> results = getScanService().isPresent()
+                ? getScanService().get().scan(jarFiles, options)
+                : JarInfectionScanner.check(jarFiles, options);
+
+        File reportDirectory = getReportDirectory().get().getAsFile();
+        clearReports(reportDirectory);
+
+        Set<String> reportNames = new HashSet<>();
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            ScanResult result = results.get(i);
+
+            // Additional files can share a name with the artifact, when they come from different directories
+            String name = jarFiles.get(i).getName();
+            for (int n = 2; !reportNames.add(name); n++) {
+                name = n + "-" + jarFiles.get(i).getName();
+            }
+            ScanReport.write(result, new File(reportDirectory, name + ".json"));
+
+            if (!result.isClean())
+                failures.add(result.getMessage());
+
+            for (ResourceFinding finding : result.getResourceFindings()) {
+                getLogger().warn("Suspicious resource in {}: {}", jarFiles.get(i).getName(), finding);
+            }
+
+            ScanStatistics statistics = result.getStatistics();
+            if (statistics.getNestedJarsSkipped() > 0)
+                getLogger().warn("{} jars nested in {} were not scanned, they are nested deeper than nestedJarScanDepth ({})", statistics.getNestedJarsSkipped(), jarFiles.get(i).getName(), getNestedJarDepth().get());
+
+            getLogger().info(
+                    "Scanned {} classes of {} in {} ms, {} of which were ruled out by the constant pool prefilter",
+                    statistics.getClassesScanned(),
+                    jarFiles.get(i).getName(),
+                    statistics.getScanTime().toMillis(),
+                    statistics.getClassesPrefiltered()
+            );
+        }
+
+        if (!failures.isEmpty())
+            throw new GradleException(String.join("\n", failures) + "\nSee the reports in " + reportDirectory.getAbsolutePath());
+    }
+
+    private static void clearReports(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+
+        File[] reports = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (reports == null)
+            return;
+
+        for (File report : reports) {
+            Files.delete(report.toPath());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.tasks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hypherionmc.modpublisher.util.scanner.ScanDependencyTransform;
+import com.hypherionmc.modpublisher.util.scanner.ScanResult;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author HypherionSA
+ * Makes sure the dependency jars of the selected configurations are free of fractureiser.
+ * <p>
+ * The scanning itself is done by {@link ScanDependencyTransform}, when Gradle resolves the
+ * inputs of this task. This task collects the report of every jar into its report directory,
+ * and fails when any of them is infected.
+ */
+public abstract class ScanDependenciesTask extends DefaultTask {
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * @return The scan reports of the dependency jars
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract ConfigurableFileCollection getScanReports();
+
+    /**
+     * @return The directory the JSON report of each dependency jar is copied to
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getReportDirectory();
+
+    @TaskAction
+    public void scan() throws IOException {
+        File reportDirectory = getReportDirectory().get().getAsFile();
+        Files.createDirectories(reportDirectory.toPath());
+        File[] oldReports = reportDirectory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (oldReports != null) {
+            for (File report : oldReports) {
+                Files.delete(report.toPath());
+            }
+        }
+
+        Set<String> reportNames = new HashSet<>();
+        List<String> failures = new ArrayList<>();
+        int jars = 0;
+        for (File report : getScanReports().getFiles()) {
+            jars++;
+
+            // Libraries of different groups can share a file name
+            String name = report.getName();
+            for (int n = 2; !reportNames.add(name); n++) {
+                name = n + "-" + report.getName();
+            }
+            Files.copy(report.toPath(), new File(reportDirectory, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            JsonObject json;
+            try (Reader reader = Files.newBufferedReader(report.toPath(), StandardCharsets.UTF_8)) {
+                json = GSON.fromJson(reader, JsonObject.class);
+            }
+
+            if (!ScanResult.Status.CLEAN.name().equals(json.get("status").getAsString()))
+                failures.add(describe(json));
+        }
+
+        if (!failures.isEmpty())
+            throw new GradleException(String.join("\n", failures) + "\nSee the reports in " + reportDirectory.getAbsolutePath());
+
+        getLogger().lifecycle("{} dependency jars are free of fractureiser", jars);
+    }
+
+    private static String describe(JsonObject report) {
+        String message = "!!!! Dependency " + report.get("file").getAsString() + " is infected with fractureiser";
+
+        JsonArray findings = report.getAsJsonArray("findings");
+        if (findings == null || findings.size() == 0)
+            return message;
+
+        JsonObject first = findings.get(0).getAsJsonObject();
+        message += ". " + first.get("signature").getAsString() + " in " + first.get("entry").getAsString() + " " + first.get("method").getAsString();
+        if (findings.size() > 1)
+            message += ", and " + (findings.size() - 1) + " more";
+        return message;
+    }
+}
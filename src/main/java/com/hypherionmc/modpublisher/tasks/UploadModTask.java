@@ -12,7 +12,9 @@ import org.gradle.api.tasks.TaskAction;
 /**
  * @author HypherionSA
  * The main Upload Task. This will check that all required values are present
- * and execute the appropriate upload sub-task
+ * and execute the appropriate upload sub-task.
+ * <p>
+ * The sub-tasks upload on Gradle workers, so all platforms are uploaded to at the same time.
  */
 public class UploadModTask extends DefaultTask {
 
@@ -8,8 +8,12 @@ package com.hypherionmc.modpublisher.util;
 
 import com.hypherionmc.modpublisher.plugin.ModPublisherGradleExtension;
 import com.hypherionmc.modpublisher.properties.Platform;
+import com.hypherionmc.modpublisher.services.ScanService;
 import com.hypherionmc.modpublisher.util.changelogs.ChangelogUtil;
+import com.hypherionmc.modpublisher.util.metadata.ModMetadata;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
 import groovy.lang.Closure;
+import okhttp3.OkHttpClient;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
@@ -19,6 +23,7 @@ import org.gradle.api.tasks.bundling.AbstractArchiveTask;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * @author HypherionSA
@@ -67,10 +72,62 @@ public class CommonUtil {
         return extension.getArtifact().get();
     }
 
+    /**
+     * Read the metadata of an artifact from its mod descriptors, when inferMetadata is enabled
+     * @param project The project the artifact is uploaded from
+     * @param extension The configured gradle extension
+     * @param scanService The service that inspected the artifact, and caches its metadata
+     * @param inspection The inspection of the artifact
+     * @return The metadata of the artifact, or {@link ModMetadata#EMPTY} when inferMetadata is disabled
+     */
+    public static ModMetadata resolveMetadata(Project project, ModPublisherGradleExtension extension, ScanService scanService, ArtifactInspection inspection) throws IOException {
+        if (!extension.getInferMetadata().get())
+            return ModMetadata.EMPTY;
+
+        ModMetadata metadata = scanService.getMetadata(inspection);
+        if (!metadata.isEmpty())
+            project.getLogger().lifecycle("Found {} in {}: {}", String.join(", ", metadata.getDescriptors()), inspection.getFile().getName(), metadata);
+        return metadata;
+    }
+
+    /**
+     * Resolve the loaders to upload for. Configured loaders always win over the mod descriptors
+     * @param extension The configured gradle extension
+     * @param metadata The metadata of the artifact, only used when inferMetadata is enabled
+     * @return The configured loaders, or the loaders of the descriptors when none are configured
+     */
+    public static List<String> resolveLoaders(ModPublisherGradleExtension extension, ModMetadata metadata) {
+        List<String> loaders = extension.getLoaders().get();
+        if (loaders.isEmpty() && extension.getInferMetadata().get())
+            return metadata.getLoaders();
+        return loaders;
+    }
+
+    /**
+     * Resolve the game versions to upload for. Configured versions always win over the mod descriptors
+     * @param extension The configured gradle extension
+     * @param metadata The metadata of the artifact, only used when inferMetadata is enabled
+     * @return The configured game versions, or the exact Minecraft versions of the descriptors when none are configured
+     */
+    public static List<String> resolveGameVersions(ModPublisherGradleExtension extension, ModMetadata metadata) {
+        List<String> gameVersions = extension.getGameVersions().get();
+        if (gameVersions.isEmpty() && extension.getInferMetadata().get())
+            return metadata.getMinecraftVersions();
+        return gameVersions;
+    }
+
     /**
      * Try to convert an OBJECT to a String
      */
     public static String resolveString(Object obj) throws IOException {
+        return resolveString(obj, null);
+    }
+
+    /**
+     * Try to convert an OBJECT to a String
+     * @param client The client to download changelog urls with, or null to use a new one
+     */
+    public static String resolveString(Object obj, OkHttpClient client) throws IOException {
         if (obj == null)
             throw new NullPointerException();
 
@@ -82,7 +139,7 @@ public class CommonUtil {
             String val = (String) obj;
 
             if (val.startsWith("http://") || val.startsWith("https://")) {
-                val = ChangelogUtil.readFromUrl(val);
+                val = client == null ? ChangelogUtil.readFromUrl(val) : ChangelogUtil.readFromUrl(client, val);
             }
 
             if (val == null)
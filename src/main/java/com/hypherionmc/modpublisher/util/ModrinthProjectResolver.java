@@ -0,0 +1,256 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author HypherionSA
+ * Resolves Modrinth project slugs to project IDs in bulk, with the {@code /projects?ids=[...]} endpoint.
+ * All slugs of an upload are looked up with one request, instead of one request per slug.
+ * <p>
+ * Long lists are split into several requests, which run at the same time. How many of them are sent at
+ * once is limited by the dispatcher of the client.
+ * <p>
+ * With a {@link ProjectIdCache}, only slugs that are not cached are looked up before the upload. Stale
+ * entries are used as they are, and refreshed in the background for the next build.
+ */
+public class ModrinthProjectResolver {
+
+    // Keeps the query string well below the url length limits of proxies
+    static final int MAX_IDS_PER_REQUEST = 100;
+
+    private static final Gson GSON = new Gson();
+
+    private final OkHttpClient client;
+    private final HttpUrl projectsUrl;
+    private final String token;
+    private final String apiBase;
+    private final ProjectIdCache cache;
+
+    /**
+     * @param client The client to send the requests with
+     * @param apiBase The base url of the API, like {@code https://api.modrinth.com/v2}
+     * @param token The API token, so private projects of the user are found. May be null
+     */
+    public ModrinthProjectResolver(OkHttpClient client, String apiBase, @Nullable String token) {
+        this(client, apiBase, token, null);
+    }
+
+    /**
+     * @param client The client to send the requests with
+     * @param apiBase The base url of the API, like {@code https://api.modrinth.com/v2}
+     * @param token The API token, so private projects of the user are found. May be null
+     * @param cache The cache to take project IDs from, and store them in. May be null
+     */
+    public ModrinthProjectResolver(OkHttpClient client, String apiBase, @Nullable String token, @Nullable ProjectIdCache cache) {
+        this.client = client;
+        this.projectsUrl = HttpUrl.get(apiBase + "/projects");
+        this.token = token;
+        this.apiBase = apiBase;
+        this.cache = cache;
+    }
+
+    /**
+     * Look up several projects at once
+     * @param slugs The slugs or IDs of the projects
+     * @return Each slug that was found, in the order they were passed in, mapped to its project ID.
+     * Slugs that do not exist are left out
+     */
+    public CompletableFuture<Map<String, String>> resolve(Collection<String> slugs) {
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(slugs));
+
+        Map<String, String> cached = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        for (String slug : unique) {
+            ProjectIdCache.Entry entry = cache == null ? null : cache.get(apiBase, slug);
+            if (entry == null) {
+                missing.add(slug);
+                continue;
+            }
+
+            cached.put(slug, entry.getProjectId());
+            if (entry.isStale())
+                stale.add(slug);
+        }
+
+        // Not waited on, the stale IDs are almost always still right
+        if (!stale.isEmpty())
+            fetchAll(stale).thenAccept(found -> store(stale, found));
+
+        return fetchAll(missing).thenApply(found -> {
+            store(missing, found);
+
+            Map<String, String> result = new LinkedHashMap<>();
+            for (String slug : unique) {
+                String id = cached.containsKey(slug) ? cached.get(slug) : found.get(slug);
+                if (id != null)
+                    result.put(slug, id);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * @return Every project that was found
+     */
+    private CompletableFuture<Projects> fetchAll(List<String> slugs) {
+        if (slugs.isEmpty())
+            return CompletableFuture.completedFuture(new Projects());
+
+        List<CompletableFuture<Projects>> requests = new ArrayList<>();
+        for (int i = 0; i < slugs.size(); i += MAX_IDS_PER_REQUEST) {
+            requests.add(fetch(slugs.subList(i, Math.min(i + MAX_IDS_PER_REQUEST, slugs.size()))));
+        }
+
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).thenApply(v -> {
+            Projects found = new Projects();
+            for (CompletableFuture<Projects> request : requests) {
+                found.addAll(request.join());
+            }
+            return found;
+        });
+    }
+
+    private void store(List<String> slugs, Projects found) {
+        if (cache == null)
+            return;
+
+        for (String slug : slugs) {
+            String id = found.get(slug);
+            if (id != null) {
+                cache.put(apiBase, slug, id);
+            } else {
+                cache.remove(apiBase, slug);
+            }
+        }
+
+        // Off the upload, the file may be slow to write, or locked by another build
+        CompletableFuture.runAsync(() -> {
+            try {
+                cache.save();
+            } catch (IOException | RuntimeException ignored) {
+                // The IDs are still used for this upload, and looked up again next time
+            }
+        });
+    }
+
+    private CompletableFuture<Projects> fetch(List<String> slugs) {
+        HttpUrl url = projectsUrl.newBuilder()
+                .addQueryParameter("ids", GSON.toJson(slugs))
+                .build();
+
+        Request.Builder request = new Request.Builder().url(url);
+        if (token != null && !token.isEmpty())
+            request.header("Authorization", token);
+
+        CompletableFuture<Projects> future = new CompletableFuture<>();
+        client.newCall(request.build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful())
+                        throw new IOException("Failed to look up Modrinth projects " + slugs + ": HTTP " + response.code());
+
+                    future.complete(parseProjects(body == null ? "" : body.string()));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @param json The response of the projects endpoint
+     * @return Every project in the response
+     */
+    static Projects parseProjects(String json) throws IOException {
+        JsonArray projects;
+        try {
+            projects = GSON.fromJson(json, JsonArray.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid response from Modrinth: " + e.getMessage(), e);
+        }
+
+        Projects found = new Projects();
+        if (projects == null)
+            return found;
+
+        for (JsonElement element : projects) {
+            if (!element.isJsonObject())
+                continue;
+
+            JsonObject project = element.getAsJsonObject();
+            if (!project.has("id"))
+                continue;
+
+            String id = project.get("id").getAsString();
+            found.ids.add(id);
+            if (project.has("slug") && !project.get("slug").isJsonNull())
+                found.slugs.put(project.get("slug").getAsString().toLowerCase(Locale.ROOT), id);
+        }
+        return found;
+    }
+
+    /**
+     * The projects found by one or more requests. The same project may be referenced by slug and ID, but
+     * only slugs are case-insensitive. IDs are base62, so two IDs that only differ in case are different projects
+     */
+    static final class Projects {
+        private final Set<String> ids = new HashSet<>();
+        private final Map<String, String> slugs = new HashMap<>();
+
+        /**
+         * @param slug The slug or ID of a project
+         * @return The ID of the project, or null if it was not found
+         */
+        @Nullable
+        String get(String slug) {
+            if (ids.contains(slug))
+                return slug;
+            return slugs.get(slug.toLowerCase(Locale.ROOT));
+        }
+
+        private void addAll(Projects other) {
+            ids.addAll(other.ids);
+            slugs.putAll(other.slugs);
+        }
+    }
+}
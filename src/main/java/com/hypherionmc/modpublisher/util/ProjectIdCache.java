@@ -0,0 +1,267 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Persistent cache of the project IDs that platform slugs resolve to, so common dependencies are not
+ * looked up again by every build. Entries are keyed on the API they came from and the slug, so production
+ * and staging never mix.
+ * <p>
+ * Entries older than the TTL are still returned, but marked as stale, so the caller can use them right away
+ * and refresh them in the background. Entries that were not refreshed for {@link #MAX_AGE} are dropped.
+ * <p>
+ * Slugs are stored as they were written. A slug can not be told apart from a project ID, and IDs are
+ * case-sensitive, so the same slug in another case is a separate entry.
+ * <p>
+ * The cache is shared by every build in the same Gradle daemon. Other builds are handled when saving: under
+ * a lock on a file next to the cache, the file on disk is merged in, keeping the newest entry of every slug,
+ * and then replaced atomically. Concurrent builds never see a partially written cache, and never drop each
+ * other's entries. A save that finds the lock taken is skipped instead of waiting for it.
+ */
+public final class ProjectIdCache {
+
+    public static final long DEFAULT_TTL = TimeUnit.DAYS.toMillis(1);
+    static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private static final int MAGIC = 0x4D50_5349;
+    private static final int FORMAT = 2;
+    private static final Map<File, ProjectIdCache> CACHES = new ConcurrentHashMap<>();
+
+    // Removed entries are kept with an empty ID, so a merge does not bring back what a newer lookup removed
+    private static final String REMOVED = "";
+
+    private final File file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long ttl;
+    private boolean dirty;
+
+    private ProjectIdCache(File file, long ttl) {
+        this.file = file;
+        this.ttl = ttl;
+        entries.putAll(read(file));
+    }
+
+    /**
+     * Open the cache backed by a file. Every caller in the same JVM shares a single instance per file
+     * @param file The file the cache is persisted to
+     * @param ttl How long, in milliseconds, an entry is used before it is refreshed
+     * @return The cache
+     */
+    public static ProjectIdCache open(File file, long ttl) {
+        ProjectIdCache cache = CACHES.computeIfAbsent(file.getAbsoluteFile(), f -> new ProjectIdCache(f, ttl));
+        cache.setTtl(ttl);
+        return cache;
+    }
+
+    /**
+     * @param api The base url of the API the slug belongs to
+     * @param slug The slug of the project
+     * @return The cached entry, which may be stale, or null if the slug is not cached
+     */
+    @Nullable
+    public synchronized Entry get(String api, String slug) {
+        Entry entry = entries.get(key(api, slug));
+        if (entry == null || entry.projectId.equals(REMOVED))
+            return null;
+
+        long age = System.currentTimeMillis() - entry.resolvedAt;
+        if (age > MAX_AGE)
+            return null;
+
+        return age > ttl ? new Entry(entry.projectId, entry.resolvedAt, true) : entry;
+    }
+
+    /**
+     * Remember the project ID of a slug
+     * @param api The base url of the API the slug belongs to
+     * @param slug The slug of the project
+     * @param projectId The ID the slug resolved to
+     */
+    public synchronized void put(String api, String slug, String projectId) {
+        entries.put(key(api, slug), new Entry(projectId, System.currentTimeMillis(), false));
+        dirty = true;
+    }
+
+    /**
+     * Forget a slug that no longer resolves to a project
+     * @param api The base url of the API the slug belongs to
+     * @param slug The slug of the project
+     */
+    public synchronized void remove(String api, String slug) {
+        if (entries.containsKey(key(api, slug)))
+            put(api, slug, REMOVED);
+    }
+
+    /**
+     * Write the cache to disk, if anything changed since it was loaded or last saved.
+     * Entries written by other builds in the meantime are kept, unless this cache has a newer one.
+     * <p>
+     * Never waits for other builds. When another build, or another copy of the plugin in this JVM, is saving
+     * the same file, nothing is written, and the changes are saved by the next call
+     */
+    public void save() throws IOException {
+        Map<String, Entry> snapshot;
+        synchronized (this) {
+            if (!dirty)
+                return;
+            snapshot = new HashMap<>(entries);
+            dirty = false;
+        }
+
+        try {
+            Map<String, Entry> merged = mergeAndReplace(snapshot);
+            if (merged == null) {
+                markDirty();
+                return;
+            }
+
+            // Lookups only wait for this, not for the file
+            synchronized (this) {
+                for (Map.Entry<String, Entry> other : merged.entrySet()) {
+                    Entry entry = entries.get(other.getKey());
+                    if (entry == null || entry.resolvedAt < other.getValue().resolvedAt)
+                        entries.put(other.getKey(), other.getValue());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            markDirty();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The entries that were written, or null if another build holds the lock
+     */
+    private Map<String, Entry> mergeAndReplace(Map<String, Entry> entries) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+            throw new IOException("Failed to create directory " + parent);
+
+        // Held by one build at a time, across daemons, from reading the file to replacing it
+        try (FileChannel channel = FileChannel.open(new File(parent, file.getName() + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Another classloader of this JVM, with its own instance of the cache, is saving
+                return null;
+            }
+            if (lock == null)
+                return null;
+
+            try {
+                for (Map.Entry<String, Entry> other : read(file).entrySet()) {
+                    Entry entry = entries.get(other.getKey());
+                    if (entry == null || entry.resolvedAt < other.getValue().resolvedAt)
+                        entries.put(other.getKey(), other.getValue());
+                }
+
+                long now = System.currentTimeMillis();
+                entries.values().removeIf(entry -> now - entry.resolvedAt > MAX_AGE);
+                write(entries, parent);
+            } finally {
+                lock.release();
+            }
+        }
+        return entries;
+    }
+
+    private void write(Map<String, Entry> entries, File parent) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(entries.size());
+
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().projectId);
+                out.writeLong(entry.getValue().resolvedAt);
+            }
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+    }
+
+    private synchronized void markDirty() {
+        dirty = true;
+    }
+
+    private synchronized void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    private static String key(String api, String slug) {
+        return api + ' ' + slug;
+    }
+
+    private static Map<String, Entry> read(File file) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!file.isFile())
+            return entries;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+                return entries;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                entries.put(in.readUTF(), new Entry(in.readUTF(), in.readLong(), false));
+            }
+        } catch (IOException e) {
+            // A broken cache is not fatal, we just start over
+            entries.clear();
+        }
+        return entries;
+    }
+
+    public static final class Entry {
+        private final String projectId;
+        private final long resolvedAt;
+        private final boolean stale;
+
+        Entry(String projectId, long resolvedAt, boolean stale) {
+            this.projectId = projectId;
+            this.resolvedAt = resolvedAt;
+            this.stale = stale;
+        }
+
+        /**
+         * @return The ID of the project
+         */
+        public String getProjectId() {
+            return projectId;
+        }
+
+        /**
+         * @return If the entry is older than the TTL, and should be refreshed
+         */
+        public boolean isStale() {
+            return stale;
+        }
+    }
+}
@@ -8,12 +8,12 @@ package com.hypherionmc.modpublisher.util;
 
 import com.hypherionmc.modpublisher.plugin.ModPublisherGradleExtension;
 import com.hypherionmc.modpublisher.properties.Platform;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
 import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 
 import java.io.File;
-import java.nio.file.*;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -31,12 +31,22 @@ public class UploadPreChecks {
             throw new Exception("Missing artifact. Cannot continue");
         }
 
+        // Inferred game versions are only known once the artifact is inspected, see checkGameVersions
+        if (extension.getInferMetadata().get())
+            return;
+
         if (!extension.getGameVersions().isPresent() || extension.getGameVersions().get().isEmpty()) {
             throw new Exception("gameVersions is not defined. This is required");
         }
+    }
 
-        if (!extension.getDisableMalwareScanner().get()) {
-            JarInfectionScanner.scan(project, artifactObject);
+    /**
+     * Check the game versions an artifact is uploaded for, after they were resolved with {@link CommonUtil#resolveGameVersions}
+     * @param gameVersions The resolved game versions
+     */
+    public static void checkGameVersions(List<String> gameVersions) throws Exception {
+        if (gameVersions.isEmpty()) {
+            throw new Exception("gameVersions is not defined, and no exact Minecraft version was found in the mod descriptors. This is required");
         }
     }
 
@@ -96,33 +106,53 @@ public class UploadPreChecks {
         if (extension.getDisableEmptyJarCheck().get())
             return;
 
+        checkEmptyJar(file, loaderVersions);
+    }
+
+    public static void checkEmptyJar(ModPublisherGradleExtension extension, ArtifactInspection inspection, List<String> loaderVersions) throws Exception {
+        if (extension.getDisableEmptyJarCheck().get())
+            return;
+
+        checkEmptyJar(inspection, loaderVersions);
+    }
+
+    /**
+     * Check that a jar contains the metadata files of every loader it is uploaded for
+     * @param file The jar to check
+     * @param loaderVersions The loaders the jar is uploaded for
+     * @throws Exception If the metadata of one of the loaders is missing
+     */
+    public static void checkEmptyJar(File file, List<String> loaderVersions) throws Exception {
         if (loaderVersions.isEmpty())
             return;
 
-        FileSystem system = FileSystems.newFileSystem(Paths.get(file.getPath()), null);
-        Path quiltJson = system.getPath("quilt.mod.json");
-        Path fabricJson = system.getPath("fabric.mod.json");
-        Path forgeToml = system.getPath("META-INF/mods.toml");
-        Path forgeMc = system.getPath("mcmod.info");
+        checkEmptyJar(JarInfectionScanner.inspect(file, null), loaderVersions);
+    }
 
+    /**
+     * Check that an inspected jar contains the metadata files of every loader it is uploaded for.
+     * Only the entry index of the inspection is used, so the jar is not read again
+     * @param inspection The inspection of the jar
+     * @param loaderVersions The loaders the jar is uploaded for
+     * @throws Exception If the metadata of one of the loaders is missing
+     */
+    public static void checkEmptyJar(ArtifactInspection inspection, List<String> loaderVersions) throws Exception {
         if (loaderVersions.contains("forge") || loaderVersions.contains("neoforge")) {
             // Check for either mods.toml or mcmod.info (for older version support)
-            if (!Files.exists(forgeToml) && !Files.exists(forgeMc))
+            if (!inspection.hasEntry("META-INF/mods.toml") && !inspection.hasEntry("mcmod.info"))
                 throw new GradleException("File marked as forge/neoforge, but no mods.toml or mcmod.info file was found");
         }
 
         if (loaderVersions.contains("fabric")) {
-            if (!Files.exists(fabricJson))
+            if (!inspection.hasEntry("fabric.mod.json"))
                 throw new GradleException("File marked as fabric, but no fabric.mod.json file was found");
         }
 
         if (loaderVersions.contains("quilt")) {
             // Fabric mods can run on quilt, so we check for either of the files to be present
-            if (!Files.exists(quiltJson) && !Files.exists(fabricJson))
+            if (!inspection.hasEntry("quilt.mod.json") && !inspection.hasEntry("fabric.mod.json"))
                 throw new GradleException("File marked as quilt, but no quilt.mod.json OR fabric.mod.json file was found");
         }
-
-        system.close();
     }
 
     public static boolean isModrinthID(String testInput) {
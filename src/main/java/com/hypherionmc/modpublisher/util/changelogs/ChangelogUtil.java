@@ -45,11 +45,20 @@ public class ChangelogUtil {
 
     @Nullable
     public static String readFromUrl(String url) {
+        return readFromUrl(new OkHttpClient(), url);
+    }
+
+    /**
+     * Download a changelog with an existing client, so the connection to the paste site can be reused
+     * @param client The client to download with
+     * @param url The url of the changelog
+     * @return The changelog, or null if the site is not supported or the changelog is empty
+     */
+    @Nullable
+    public static String readFromUrl(OkHttpClient client, String url) {
         if (!isValidUploadSite(url))
             return null;
 
-        OkHttpClient client = new OkHttpClient();
-
         Request request = new Request.Builder()
                 .url(url)
                 .build();
@@ -0,0 +1,97 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.metadata;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * What the mod descriptors of a jar say about it, merged over all descriptors in the jar.
+ * Read with {@link ModMetadataReader}
+ */
+public final class ModMetadata {
+
+    public static final ModMetadata EMPTY = new ModMetadata(
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyList()
+    );
+
+    private final List<String> descriptors;
+    private final List<String> modIds;
+    private final List<String> loaders;
+    private final List<String> minecraftVersions;
+    private final List<String> minecraftVersionRanges;
+    private final List<String> requiredDependencies;
+
+    ModMetadata(Collection<String> descriptors, Collection<String> modIds, Collection<String> loaders,
+                Collection<String> minecraftVersions, Collection<String> minecraftVersionRanges, Collection<String> requiredDependencies) {
+        this.descriptors = Collections.unmodifiableList(new ArrayList<>(descriptors));
+        this.modIds = Collections.unmodifiableList(new ArrayList<>(modIds));
+        this.loaders = Collections.unmodifiableList(new ArrayList<>(loaders));
+        this.minecraftVersions = Collections.unmodifiableList(new ArrayList<>(minecraftVersions));
+        this.minecraftVersionRanges = Collections.unmodifiableList(new ArrayList<>(minecraftVersionRanges));
+        this.requiredDependencies = Collections.unmodifiableList(new ArrayList<>(requiredDependencies));
+    }
+
+    /**
+     * @return The descriptors that were found in the jar, like {@code fabric.mod.json}
+     */
+    public List<String> getDescriptors() {
+        return descriptors;
+    }
+
+    /**
+     * @return The ids of the mods in the jar, including ids they provide
+     */
+    public List<String> getModIds() {
+        return modIds;
+    }
+
+    /**
+     * @return The loaders the jar has descriptors for, named like the {@code loaders} of the extension
+     */
+    public List<String> getLoaders() {
+        return loaders;
+    }
+
+    /**
+     * @return The Minecraft versions the descriptors pin the jar to. Ranges are not expanded, so this is
+     * empty when the descriptors only declare ranges
+     */
+    public List<String> getMinecraftVersions() {
+        return minecraftVersions;
+    }
+
+    /**
+     * @return The Minecraft version ranges that could not be turned into exact versions, as they were written
+     */
+    public List<String> getMinecraftVersionRanges() {
+        return minecraftVersionRanges;
+    }
+
+    /**
+     * @return The mod ids of all required dependencies, without loaders, Minecraft, Java and mods in the jar itself
+     */
+    public List<String> getRequiredDependencies() {
+        return requiredDependencies;
+    }
+
+    public boolean isEmpty() {
+        return descriptors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "loaders " + loaders +
+                ", Minecraft versions " + minecraftVersions +
+                (minecraftVersionRanges.isEmpty() ? "" : " and ranges " + minecraftVersionRanges) +
+                ", required dependencies " + requiredDependencies;
+    }
+}
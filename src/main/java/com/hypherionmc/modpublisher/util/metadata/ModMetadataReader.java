@@ -0,0 +1,313 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.metadata;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author HypherionSA
+ * Reads the loaders, Minecraft versions and required dependencies of a jar from its mod descriptors:
+ * {@code fabric.mod.json}, {@code quilt.mod.json}, {@code META-INF/mods.toml}, {@code META-INF/neoforge.mods.toml}
+ * and {@code mcmod.info}.
+ * <p>
+ * The descriptors are taken from an {@link ArtifactInspection}, so the jar is not opened again.
+ */
+public final class ModMetadataReader {
+
+    private static final Gson GSON = new Gson();
+
+    // Dependencies on the game, the runtime or a loader, which are not projects on any platform
+    private static final Set<String> PLATFORM_IDS = new HashSet<>(Arrays.asList(
+            "minecraft", "java", "fabricloader", "fabric-loader", "quilt_loader", "forge", "neoforge", "fml", "javafml"
+    ));
+
+    // A single version, optionally with an = in front. Wildcards like 1.20.x are ranges
+    private static final Pattern EXACT_VERSION = Pattern.compile("^=?\\s*([0-9][0-9A-Za-z.+_-]*)$");
+    private static final Pattern WILDCARD = Pattern.compile("(^|\\.)[xX*](\\.|$)");
+
+    // A Maven range that only contains a single version, like [1.20.1] or [1.20.1,1.20.1]
+    private static final Pattern MAVEN_EXACT = Pattern.compile("^\\[\\s*([^,\\s]+)\\s*(?:,\\s*\\1\\s*)?]$");
+
+    private final Set<String> descriptors = new LinkedHashSet<>();
+    private final Set<String> modIds = new LinkedHashSet<>();
+    private final Set<String> loaders = new LinkedHashSet<>();
+    private final Set<String> minecraftVersions = new LinkedHashSet<>();
+    private final Set<String> minecraftVersionRanges = new LinkedHashSet<>();
+    private final Set<String> requiredDependencies = new LinkedHashSet<>();
+
+    private ModMetadataReader() {}
+
+    /**
+     * @param inspection The inspection of the jar
+     * @return The metadata of all descriptors in the jar, or {@link ModMetadata#EMPTY} if it has none
+     * @throws IOException If one of the descriptors can not be parsed
+     */
+    public static ModMetadata read(ArtifactInspection inspection) throws IOException {
+        ModMetadataReader reader = new ModMetadataReader();
+
+        reader.readDescriptor(inspection, "fabric.mod.json");
+        reader.readDescriptor(inspection, "quilt.mod.json");
+        reader.readDescriptor(inspection, "META-INF/mods.toml");
+        reader.readDescriptor(inspection, "META-INF/neoforge.mods.toml");
+        reader.readDescriptor(inspection, "mcmod.info");
+
+        return reader.build();
+    }
+
+    private void readDescriptor(ArtifactInspection inspection, String name) throws IOException {
+        byte[] content = inspection.getDescriptor(name);
+        if (content == null)
+            return;
+
+        String text = new String(content, StandardCharsets.UTF_8);
+        if (text.startsWith("\uFEFF"))
+            text = text.substring(1);
+
+        descriptors.add(name);
+        try {
+            switch (name) {
+                case "fabric.mod.json":
+                    readFabric(parseJson(text).getAsJsonObject());
+                    break;
+                case "quilt.mod.json":
+                    readQuilt(parseJson(text).getAsJsonObject());
+                    break;
+                case "META-INF/mods.toml":
+                    readModsToml(ModsTomlReader.read(text), false);
+                    break;
+                case "META-INF/neoforge.mods.toml":
+                    readModsToml(ModsTomlReader.read(text), true);
+                    break;
+                case "mcmod.info":
+                    readMcmodInfo(parseJson(text));
+                    break;
+            }
+        } catch (IOException | JsonParseException | IllegalStateException | ClassCastException e) {
+            throw new IOException("Invalid " + name + " in " + inspection.getFile().getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static JsonElement parseJson(String text) throws IOException {
+        JsonElement json = GSON.fromJson(text, JsonElement.class);
+        if (json == null)
+            throw new IOException("The file is empty");
+        return json;
+    }
+
+    private void readFabric(JsonObject json) {
+        loaders.add("fabric");
+        addString(modIds, json.get("id"));
+        addStrings(modIds, json.get("provides"));
+
+        JsonElement depends = json.get("depends");
+        if (depends == null || !depends.isJsonObject())
+            return;
+
+        for (Map.Entry<String, JsonElement> dependency : depends.getAsJsonObject().entrySet()) {
+            if (dependency.getKey().equals("minecraft")) {
+                addMinecraftVersions(dependency.getValue());
+            } else {
+                addRequired(dependency.getKey());
+            }
+        }
+    }
+
+    private void readQuilt(JsonObject json) {
+        loaders.add("quilt");
+
+        JsonElement loader = json.get("quilt_loader");
+        if (loader == null || !loader.isJsonObject())
+            return;
+
+        JsonObject quilt = loader.getAsJsonObject();
+        addString(modIds, quilt.get("id"));
+
+        JsonElement provides = quilt.get("provides");
+        if (provides != null && provides.isJsonArray()) {
+            for (JsonElement provided : provides.getAsJsonArray()) {
+                addString(modIds, provided.isJsonObject() ? provided.getAsJsonObject().get("id") : provided);
+            }
+        }
+
+        JsonElement depends = quilt.get("depends");
+        if (depends == null || !depends.isJsonArray())
+            return;
+
+        for (JsonElement dependency : depends.getAsJsonArray()) {
+            if (dependency.isJsonPrimitive()) {
+                addRequired(dependency.getAsString());
+                continue;
+            }
+            if (!dependency.isJsonObject())
+                continue;
+
+            JsonObject object = dependency.getAsJsonObject();
+            if (!object.has("id"))
+                continue;
+
+            String id = object.get("id").getAsString();
+            if (id.equals("minecraft")) {
+                addMinecraftVersions(object.get("versions"));
+            } else if (!object.has("optional") || !object.get("optional").getAsBoolean()) {
+                addRequired(id);
+            }
+        }
+    }
+
+    private void readModsToml(ModsTomlReader toml, boolean neoforge) {
+        modIds.addAll(toml.getModIds());
+
+        boolean dependsOnNeoForge = neoforge;
+        for (ModsTomlReader.Dependency dependency : toml.getDependencies()) {
+            String id = dependency.getModId();
+            if (id == null)
+                continue;
+
+            if (id.equals("neoforge")) {
+                dependsOnNeoForge = true;
+            } else if (id.equals("minecraft") && dependency.getVersionRange() != null) {
+                addMavenRange(dependency.getVersionRange());
+            } else if (isRequired(dependency)) {
+                addRequired(id);
+            }
+        }
+
+        // NeoForge for 1.20.1 to 1.20.4 still used mods.toml, and only its dependencies tell it apart from Forge
+        loaders.add(dependsOnNeoForge ? "neoforge" : "forge");
+    }
+
+    /**
+     * Newer descriptors declare a type, older ones the mandatory flag. Both default to required
+     */
+    private static boolean isRequired(ModsTomlReader.Dependency dependency) {
+        if (dependency.getType() != null)
+            return dependency.getType().equalsIgnoreCase("required");
+
+        return !Boolean.FALSE.equals(dependency.getMandatory());
+    }
+
+    private void readMcmodInfo(JsonElement json) {
+        loaders.add("forge");
+
+        // Either a plain list of mods, or the list wrapped in an object in version 2 of the format
+        JsonArray mods = null;
+        if (json.isJsonArray()) {
+            mods = json.getAsJsonArray();
+        } else if (json.isJsonObject() && json.getAsJsonObject().has("modList")) {
+            mods = json.getAsJsonObject().getAsJsonArray("modList");
+        }
+        if (mods == null)
+            return;
+
+        for (JsonElement element : mods) {
+            if (!element.isJsonObject())
+                continue;
+
+            JsonObject mod = element.getAsJsonObject();
+            addString(modIds, mod.get("modid"));
+
+            // Unexpanded placeholders, like ${mcversion}, are left out
+            JsonElement version = mod.get("mcversion");
+            if (version != null && version.isJsonPrimitive() && !version.getAsString().contains("$"))
+                addMinecraftVersion(version.getAsString());
+
+            JsonElement required = mod.get("requiredMods");
+            if (required != null && required.isJsonArray()) {
+                for (JsonElement dependency : required.getAsJsonArray()) {
+                    String id = dependency.getAsString();
+                    addRequired(id.contains("@") ? id.substring(0, id.indexOf('@')) : id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fabric and Quilt version predicates. A single predicate, or a list where any of them may match
+     */
+    private void addMinecraftVersions(JsonElement versions) {
+        if (versions == null)
+            return;
+
+        if (versions.isJsonPrimitive()) {
+            addMinecraftVersion(versions.getAsString());
+        } else if (versions.isJsonArray()) {
+            for (JsonElement version : versions.getAsJsonArray()) {
+                addMinecraftVersions(version);
+            }
+        } else if (versions.isJsonObject() && versions.getAsJsonObject().has("any")) {
+            addMinecraftVersions(versions.getAsJsonObject().get("any"));
+        } else {
+            minecraftVersionRanges.add(versions.toString());
+        }
+    }
+
+    private void addMinecraftVersion(String version) {
+        version = version.trim();
+        Matcher matcher = EXACT_VERSION.matcher(version);
+        if (matcher.matches() && !WILDCARD.matcher(matcher.group(1)).find()) {
+            minecraftVersions.add(matcher.group(1));
+        } else if (!version.isEmpty()) {
+            minecraftVersionRanges.add(version);
+        }
+    }
+
+    private void addMavenRange(String range) {
+        range = range.trim();
+        Matcher matcher = MAVEN_EXACT.matcher(range);
+        if (matcher.matches()) {
+            minecraftVersions.add(matcher.group(1));
+        } else if (!range.isEmpty()) {
+            minecraftVersionRanges.add(range);
+        }
+    }
+
+    private void addRequired(String id) {
+        if (PLATFORM_IDS.contains(id))
+            return;
+
+        // The old mod id of Fabric API, which is published as fabric-api
+        requiredDependencies.add(id.equals("fabric") ? "fabric-api" : id);
+    }
+
+    private static void addString(Set<String> target, JsonElement element) {
+        if (element != null && element.isJsonPrimitive())
+            target.add(element.getAsString());
+    }
+
+    private static void addStrings(Set<String> target, JsonElement element) {
+        if (element == null || !element.isJsonArray())
+            return;
+
+        for (JsonElement value : element.getAsJsonArray()) {
+            addString(target, value);
+        }
+    }
+
+    private ModMetadata build() {
+        if (descriptors.isEmpty())
+            return ModMetadata.EMPTY;
+
+        // Jars with several mods often depend on each other
+        requiredDependencies.removeAll(modIds);
+        return new ModMetadata(descriptors, modIds, loaders, minecraftVersions, minecraftVersionRanges, requiredDependencies);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.metadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * Line reader for {@code mods.toml} and {@code neoforge.mods.toml}. This is not a TOML parser. It only reads
+ * the few fields the metadata index uses, in the layout Forge and NeoForge generate and document:
+ * <ul>
+ *     <li>{@code modId} of every {@code [[mods]]} table</li>
+ *     <li>{@code modId}, {@code mandatory}, {@code type} and {@code versionRange} of every
+ *     {@code [[dependencies.<id>]]} table</li>
+ * </ul>
+ * Each field has to be a {@code key = value} line of its own, with a bare key and a single line string or boolean
+ * as value. Dotted keys, inline tables and the inline form of the dependency arrays are not read. All other lines
+ * are skipped, and multi-line strings and arrays are skipped as a whole, so their content is never taken as a table
+ * header. Of the escapes in basic strings, only {@code \"} and {@code \\} are decoded.
+ */
+final class ModsTomlReader {
+
+    private final List<String> modIds = new ArrayList<>();
+    private final List<Dependency> dependencies = new ArrayList<>();
+
+    private ModsTomlReader() {}
+
+    /**
+     * @param text The content of the descriptor
+     * @return The fields that were read
+     * @throws IOException If a table header or a field that is read is malformed
+     */
+    static ModsTomlReader read(String text) throws IOException {
+        ModsTomlReader reader = new ModsTomlReader();
+        reader.readLines(text.split("\r?\n", -1));
+        return reader;
+    }
+
+    /**
+     * @return The ids of the mods in the jar
+     */
+    List<String> getModIds() {
+        return Collections.unmodifiableList(modIds);
+    }
+
+    /**
+     * @return The dependencies of all mods in the jar, in the order they are declared
+     */
+    List<Dependency> getDependencies() {
+        return Collections.unmodifiableList(dependencies);
+    }
+
+    private void readLines(String[] lines) throws IOException {
+        boolean inMod = false;
+        Dependency dependency = null;
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            int number = i + 1;
+
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            if (line.startsWith("[")) {
+                String table = tableName(line, number);
+                inMod = table.equals("[mods]");
+                dependency = null;
+
+                if (table.startsWith("[dependencies.")) {
+                    dependency = new Dependency();
+                    dependencies.add(dependency);
+                }
+                continue;
+            }
+
+            int equals = line.indexOf('=');
+            if (equals < 0)
+                continue;
+
+            String key = line.substring(0, equals).trim();
+            String value = line.substring(equals + 1).trim();
+
+            // Skip to the end of values that span several lines, whatever table they are in
+            String multiLine = value.startsWith("'''") ? "'''" : value.startsWith("\"\"\"") ? "\"\"\"" : null;
+            if (multiLine != null) {
+                if (value.indexOf(multiLine, 3) < 0)
+                    i = skipUntil(lines, i + 1, multiLine, number);
+                continue;
+            }
+            if (value.startsWith("[")) {
+                i = skipArray(lines, i, value);
+                continue;
+            }
+
+            if (inMod && key.equals("modId")) {
+                modIds.add(readString(value, number));
+            } else if (dependency != null) {
+                switch (key) {
+                    case "modId":
+                        dependency.modId = readString(value, number);
+                        break;
+                    case "type":
+                        dependency.type = readString(value, number);
+                        break;
+                    case "versionRange":
+                        dependency.versionRange = readString(value, number);
+                        break;
+                    case "mandatory":
+                        dependency.mandatory = readBoolean(value, number);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The name of an array of tables in brackets, like {@code [mods]}, or the name of a plain table
+     */
+    private static String tableName(String line, int number) throws IOException {
+        boolean array = line.startsWith("[[");
+        String close = array ? "]]" : "]";
+        int end = line.indexOf(close, array ? 2 : 1);
+        if (end < 0 || !isBlankOrComment(line.substring(end + close.length())))
+            throw new IOException("Malformed table header on line " + number);
+
+        String name = line.substring(array ? 2 : 1, end).trim();
+        return array ? "[" + name + "]" : name;
+    }
+
+    private static String readString(String value, int number) throws IOException {
+        char quote = value.isEmpty() ? 0 : value.charAt(0);
+        if (quote != '"' && quote != '\'')
+            throw new IOException("Expected a string on line " + number);
+
+        StringBuilder builder = new StringBuilder();
+        for (int pos = 1; pos < value.length(); pos++) {
+            char c = value.charAt(pos);
+            if (c == quote) {
+                if (!isBlankOrComment(value.substring(pos + 1)))
+                    throw new IOException("Unexpected text after the string on line " + number);
+                return builder.toString();
+            }
+
+            if (c == '\\' && quote == '"' && pos + 1 < value.length()) {
+                char next = value.charAt(pos + 1);
+                if (next == '"' || next == '\\') {
+                    c = next;
+                    pos++;
+                }
+            }
+            builder.append(c);
+        }
+        throw new IOException("Unterminated string on line " + number);
+    }
+
+    private static boolean readBoolean(String value, int number) throws IOException {
+        int end = value.indexOf('#');
+        String text = (end < 0 ? value : value.substring(0, end)).trim();
+        if (text.equals("true"))
+            return true;
+        if (text.equals("false"))
+            return false;
+        throw new IOException("Expected true or false on line " + number);
+    }
+
+    private static boolean isBlankOrComment(String text) {
+        String rest = text.trim();
+        return rest.isEmpty() || rest.startsWith("#");
+    }
+
+    /**
+     * @return The index of the line that closes the multi-line string
+     */
+    private static int skipUntil(String[] lines, int from, String delimiter, int number) throws IOException {
+        for (int i = from; i < lines.length; i++) {
+            if (lines[i].contains(delimiter))
+                return i;
+        }
+        throw new IOException("Unterminated multi-line string on line " + number);
+    }
+
+    /**
+     * @return The index of the line that closes the array, counting brackets outside of strings
+     */
+    private static int skipArray(String[] lines, int from, String value) {
+        int depth = 0;
+        String text = value;
+        for (int i = from; i < lines.length; i++) {
+            char quote = 0;
+            for (int pos = 0; pos < text.length(); pos++) {
+                char c = text.charAt(pos);
+                if (quote != 0) {
+                    if (c == '\\' && quote == '"') {
+                        pos++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '#') {
+                    break;
+                } else if (c == '[') {
+                    depth++;
+                } else if (c == ']') {
+                    depth--;
+                }
+            }
+
+            if (depth <= 0)
+                return i;
+            if (i + 1 < lines.length)
+                text = lines[i + 1];
+        }
+        return lines.length - 1;
+    }
+
+    /**
+     * A single {@code [[dependencies.<id>]]} table. Fields that are not set are null
+     */
+    static final class Dependency {
+        private String modId;
+        private Boolean mandatory;
+        private String type;
+        private String versionRange;
+
+        String getModId() {
+            return modId;
+        }
+
+        Boolean getMandatory() {
+            return mandatory;
+        }
+
+        String getType() {
+            return type;
+        }
+
+        String getVersionRange() {
+            return versionRange;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author HypherionSA
+ * Everything the publish steps need to know about an artifact, gathered in a single pass over the jar
+ * by {@link JarInfectionScanner#inspect(File, ScanOptions)}: the names of its entries for the loader metadata
+ * checks, the mod descriptors in its root, the digests of the file, and the outcome of the malware scan
+ */
+public final class ArtifactInspection {
+
+    public static final String SHA1 = "SHA-1";
+    public static final String SHA256 = "SHA-256";
+    public static final String SHA512 = "SHA-512";
+
+    // Mod descriptors of all supported loaders, read during the inspection
+    public static final Set<String> DESCRIPTORS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "fabric.mod.json", "quilt.mod.json", "META-INF/mods.toml", "META-INF/neoforge.mods.toml", "mcmod.info"
+    )));
+
+    // Descriptors are small text files. Anything larger is not read
+    public static final int MAX_DESCRIPTOR_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final long size;
+    private final long lastModified;
+    private final Set<String> entries;
+    private final Map<String, String> digests;
+    private final Map<String, byte[]> descriptors;
+    private final ScanResult scanResult;
+
+    ArtifactInspection(File file, long size, long lastModified, Set<String> entries, Map<String, String> digests, Map<String, byte[]> descriptors, ScanResult scanResult) {
+        this.file = file;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.entries = Collections.unmodifiableSet(entries);
+        this.digests = Collections.unmodifiableMap(digests);
+        this.descriptors = descriptors;
+        this.scanResult = scanResult;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The size of the file when it was inspected, in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return The modification time of the file when it was inspected
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The names of all entries in the jar, in the form they are stored in, like {@code META-INF/mods.toml}
+     */
+    public Set<String> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param name The name of the entry
+     * @return True if the jar contains the entry
+     */
+    public boolean hasEntry(String name) {
+        return entries.contains(name);
+    }
+
+    /**
+     * @param name One of {@link #DESCRIPTORS}
+     * @return A copy of the raw content of the descriptor, or null if the jar does not contain it
+     */
+    public byte[] getDescriptor(String name) {
+        byte[] descriptor = descriptors.get(name);
+        return descriptor == null ? null : descriptor.clone();
+    }
+
+    /**
+     * @return The descriptors as they are stored, so an inspection of a copy of the jar can share them
+     */
+    Map<String, byte[]> getDescriptors() {
+        return descriptors;
+    }
+
+    /**
+     * @param algorithm One of {@link #SHA1}, {@link #SHA256} or {@link #SHA512}
+     * @return The lowercase hex digest of the whole file
+     */
+    public String getDigest(String algorithm) {
+        String digest = digests.get(algorithm);
+        if (digest == null)
+            throw new IllegalArgumentException("Digest " + algorithm + " was not computed");
+        return digest;
+    }
+
+    /**
+     * @return The outcome of the malware scan, or null if the artifact was only indexed
+     */
+    public ScanResult getScanResult() {
+        return scanResult;
+    }
+}
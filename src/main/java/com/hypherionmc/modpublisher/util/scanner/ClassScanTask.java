@@ -0,0 +1,101 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author HypherionSA
+ * Fork/Join task that scans a range of class entries from a jar. Ranges are split in half
+ * until they are small enough, and each worker reads and matches its own entries, reusing a
+ * single buffer for all of them.
+ * <p>
+ * All tasks of a scan share a single {@link ScanContext}, so once the scan is stopped, by an infected
+ * class or a limit, every worker stops before its next class.
+ */
+class ClassScanTask extends RecursiveAction {
+
+    // Number of classes a single task will scan before it is split up
+    private static final int THRESHOLD = 32;
+
+    private final JarSource source;
+    private final List<JarSource.Entry> entries;
+    private final int from;
+    private final int to;
+    private final ScanContext context;
+
+    ClassScanTask(JarSource source, List<JarSource.Entry> entries, ScanContext context) {
+        this(source, entries, 0, entries.size(), context);
+    }
+
+    private ClassScanTask(JarSource source, List<JarSource.Entry> entries, int from, int to, ScanContext context) {
+        this.source = source;
+        this.entries = entries;
+        this.from = from;
+        this.to = to;
+        this.context = context;
+    }
+
+    @Override
+    protected void compute() {
+        // Only split when running in a pool, otherwise forking would end up on the common pool
+        if (to - from > THRESHOLD && inForkJoinPool()) {
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new ClassScanTask(source, entries, from, middle, context),
+                    new ClassScanTask(source, entries, middle, to, context)
+            );
+            return;
+        }
+
+        CleanClassStore store = context.getOptions().getCleanClassStore();
+        ScanStatistics statistics = context.getStatistics();
+        ScanBuffer buffer = source.acquireBuffer();
+
+        try {
+            for (int i = from; i < to; i++) {
+                // Another worker already decided the outcome, no point in continuing
+                if (context.isDone())
+                    return;
+
+                JarSource.Entry entry = entries.get(i);
+                context.countClass(entry.getName());
+                context.checkDeclaredSize(entry.getName(), entry.getSize(), entry.getCompressedSize());
+
+                long start = System.nanoTime();
+                ByteBuffer clazz = source.readClass(entry, buffer, context);
+
+                // Identical to a class that was already found clean, so no need to match it
+                CleanClassStore.Key key = store == null ? null : CleanClassStore.key(clazz);
+                if (key != null && store.contains(key)) {
+                    statistics.classFromCache();
+                    continue;
+                }
+
+                List<ScanFinding> findings = JarInfectionScanner.findMatches(clazz, buffer, entry.getName(), context.getSignatures(), statistics);
+                context.classTimed(entry.getName(), start);
+
+                if (findings != null) {
+                    context.infected(findings);
+                    continue;
+                }
+
+                if (key != null)
+                    store.add(key);
+            }
+        } catch (ScanLimitException e) {
+            context.limitExceeded(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            source.releaseBuffer(buffer);
+        }
+    }
+}
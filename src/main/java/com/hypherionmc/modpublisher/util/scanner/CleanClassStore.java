@@ -0,0 +1,221 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author HypherionSA
+ * Persistent store of classes that were already scanned and found clean.
+ * <p>
+ * Classes are identified by the SHA-256 of their bytes, computed from the bytes that were actually read and
+ * inflated. Checksums like the CRC-32 declared in the jar are never trusted: they are linear, so an infected
+ * class can be padded to match those of a known clean class. For the same reason, a class can not be skipped
+ * before it is inflated, so the store only saves the signature matching, not the decompression. The store is
+ * shared by every jar scanned in the same Gradle daemon, and written to disk so it survives between builds.
+ * <p>
+ * Hashing a class costs about as much as matching it, so this only pays off for classes with a lot of
+ * candidate signatures, and is opt-in. The store only holds up to a fixed number of classes, evicting the
+ * least recently used ones first, and is cleared whenever it is used with a different signature database.
+ */
+public final class CleanClassStore {
+
+    private static final int MAGIC = 0x4D50_4343;
+    // Versions 1 and 2 were keyed on checksums, which can be forged
+    private static final int FORMAT = 3;
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final Map<File, CleanClassStore> STORES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final LinkedHashMap<Key, Boolean> classes;
+    private int capacity;
+    private boolean dirty;
+    private String signatureVersion;
+
+    private CleanClassStore(File file, int capacity) {
+        this.file = file;
+        this.capacity = capacity;
+        this.classes = new LinkedHashMap<Key, Boolean>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+                return size() > CleanClassStore.this.capacity;
+            }
+        };
+        load();
+    }
+
+    /**
+     * Open the store backed by a file. Every caller in the same JVM shares a single instance per file
+     * @param file The file the store is persisted to
+     * @param capacity The maximum number of classes to remember
+     * @return The store
+     */
+    public static CleanClassStore open(File file, int capacity) {
+        CleanClassStore store = STORES.computeIfAbsent(file.getAbsoluteFile(), f -> new CleanClassStore(f, capacity));
+        store.setCapacity(capacity);
+        return store;
+    }
+
+    /**
+     * Create the key of a class
+     * @param data The bytes of the class, as they were read from the jar
+     * @param offset The offset of the class in the array
+     * @param length The length of the class
+     * @return The key
+     */
+    static Key key(byte[] data, int offset, int length) {
+        MessageDigest digest = SHA256.get();
+        digest.update(data, offset, length);
+        return new Key(digest.digest());
+    }
+
+    /**
+     * Create the key of a class
+     * @param data The bytes of the class, as they were read from the jar, from its position to its limit
+     * @return The key
+     */
+    static Key key(ByteBuffer data) {
+        if (data.hasArray())
+            return key(data.array(), data.arrayOffset() + data.position(), data.remaining());
+
+        MessageDigest digest = SHA256.get();
+        digest.update(data.duplicate());
+        return new Key(digest.digest());
+    }
+
+    /**
+     * Switch the store to the signature database classes are scanned with.
+     * Classes that were clean for other signatures might not be anymore, so those are forgotten
+     * @param version The version of the signature database
+     */
+    synchronized void useSignatures(String version) {
+        if (version.equals(signatureVersion))
+            return;
+
+        if (!classes.isEmpty()) {
+            classes.clear();
+            dirty = true;
+        }
+        signatureVersion = version;
+    }
+
+    synchronized boolean contains(Key key) {
+        return classes.get(key) != null;
+    }
+
+    synchronized void add(Key key) {
+        if (classes.put(key, Boolean.TRUE) == null)
+            dirty = true;
+    }
+
+    /**
+     * @return The number of classes currently in the store
+     */
+    public synchronized int size() {
+        return classes.size();
+    }
+
+    /**
+     * Write the store to disk, if anything changed since it was loaded or last saved.
+     * The file is replaced atomically, so concurrent builds never see a partially written store
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty || signatureVersion == null)
+            return;
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs())
+            throw new IOException("Failed to create directory " + parent);
+
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(signatureVersion);
+            out.writeInt(classes.size());
+
+            // Least recently used first, so the order is restored on load
+            for (Key key : classes.keySet()) {
+                out.write(key.digest);
+            }
+        }
+
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+
+        dirty = false;
+    }
+
+    private synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    private void load() {
+        if (!file.isFile())
+            return;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+                return;
+
+            String version = in.readUTF();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] digest = new byte[Key.LENGTH];
+                in.readFully(digest);
+                classes.put(new Key(digest), Boolean.TRUE);
+            }
+            signatureVersion = version;
+        } catch (IOException e) {
+            // A broken store is not fatal, we just start over
+            classes.clear();
+        }
+    }
+
+    static final class Key {
+        static final int LENGTH = 32;
+
+        private final byte[] digest;
+        private final int hash;
+
+        Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            return Arrays.equals(digest, ((Key) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
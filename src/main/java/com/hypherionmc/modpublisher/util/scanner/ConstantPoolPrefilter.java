@@ -0,0 +1,234 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * Cheap check that only walks the constant pool of a class file.
+ * <p>
+ * A class can only contain a method or type instruction if the owner and descriptor of that
+ * instruction are present in its constant pool as UTF8 entries. When a class lacks at least
+ * one of the entries of every signature, none of them can match, and the class can be skipped
+ * before any method bytecode is decoded.
+ * <p>
+ * The check is conservative. Anything it does not understand lets the class through.
+ */
+final class ConstantPoolPrefilter {
+
+    // Encoded UTF8 entries we are looking for, grouped by their length
+    private final byte[][][] candidates;
+    private final int[][] candidateIds;
+    private final int words;
+    // Entries required by each signature, as a bitset of candidate ids
+    private final long[][] required;
+
+    private ConstantPoolPrefilter(Signature[] signatures) {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        List<List<Integer>> perSignature = new ArrayList<>();
+
+        for (Signature signature : signatures) {
+            List<Integer> needed = new ArrayList<>();
+            for (AbstractInsnNode insn : signature.getInstructions()) {
+                if (insn instanceof TypeInsnNode) {
+                    needed.add(ids.computeIfAbsent(((TypeInsnNode) insn).desc, k -> ids.size()));
+                } else if (insn instanceof MethodInsnNode) {
+                    needed.add(ids.computeIfAbsent(((MethodInsnNode) insn).owner, k -> ids.size()));
+                    needed.add(ids.computeIfAbsent(((MethodInsnNode) insn).desc, k -> ids.size()));
+                }
+            }
+            perSignature.add(needed);
+        }
+
+        this.words = Math.max(1, (ids.size() + 63) >>> 6);
+        this.required = new long[signatures.length][words];
+        for (int s = 0; s < signatures.length; s++) {
+            for (int id : perSignature.get(s)) {
+                required[s][id >>> 6] |= 1L << id;
+            }
+        }
+
+        int maxLength = 0;
+        List<byte[]> encoded = new ArrayList<>();
+        for (String value : ids.keySet()) {
+            byte[] bytes = encode(value);
+            encoded.add(bytes);
+            maxLength = Math.max(maxLength, bytes.length);
+        }
+
+        this.candidates = new byte[maxLength + 1][][];
+        this.candidateIds = new int[maxLength + 1][];
+        for (int id = 0; id < encoded.size(); id++) {
+            byte[] bytes = encoded.get(id);
+            int length = bytes.length;
+
+            if (candidates[length] == null) {
+                candidates[length] = new byte[][] { bytes };
+                candidateIds[length] = new int[] { id };
+            } else {
+                candidates[length] = Arrays.copyOf(candidates[length], candidates[length].length + 1);
+                candidates[length][candidates[length].length - 1] = bytes;
+                candidateIds[length] = Arrays.copyOf(candidateIds[length], candidateIds[length].length + 1);
+                candidateIds[length][candidateIds[length].length - 1] = id;
+            }
+        }
+    }
+
+    /**
+     * Create a prefilter for a set of signatures
+     * @param signatures The signatures that will be matched after the prefilter
+     * @return The prefilter
+     */
+    static ConstantPoolPrefilter create(Signature... signatures) {
+        return new ConstantPoolPrefilter(signatures);
+    }
+
+    /**
+     * Check if any signature could possibly match a class
+     * @param b The class file bytes
+     * @param offset The offset of the class file in the array
+     * @param length The length of the class file
+     * @return False if the class can safely be skipped
+     */
+    boolean mayMatch(byte[] b, int offset, int length) {
+        return mayMatch(ByteBuffer.wrap(b), offset, length);
+    }
+
+    /**
+     * Check if any signature could possibly match a class, without copying it out of the buffer
+     * @param b The buffer holding the class file
+     * @param offset The index of the class file in the buffer
+     * @param length The length of the class file
+     * @return False if the class can safely be skipped
+     */
+    boolean mayMatch(ByteBuffer b, int offset, int length) {
+        int end = offset + length;
+        if (length < 10 || readInt(b, offset) != 0xCAFEBABE)
+            return true;
+
+        long[] found = new long[words];
+        if (satisfied(found))
+            return true;
+
+        int count = readUnsignedShort(b, offset + 8);
+        int pos = offset + 10;
+
+        for (int i = 1; i < count; i++) {
+            if (pos >= end)
+                return true;
+
+            int tag = b.get(pos);
+            switch (tag) {
+                case 1: // Utf8
+                    if (pos + 3 > end)
+                        return true;
+                    int size = readUnsignedShort(b, pos + 1);
+                    if (pos + 3 + size > end)
+                        return true;
+                    if (size < candidates.length && candidates[size] != null && lookup(b, pos + 3, size, found) && satisfied(found))
+                        return true;
+                    pos += 3 + size;
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    pos += 3;
+                    break;
+                case 15: // MethodHandle
+                    pos += 4;
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    pos += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    pos += 9;
+                    i++;
+                    break;
+                default:
+                    // Unknown entry, so we can't tell what comes after it
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean lookup(ByteBuffer b, int pos, int size, long[] found) {
+        byte[][] options = candidates[size];
+        boolean hit = false;
+
+        outer:
+        for (int c = 0; c < options.length; c++) {
+            byte[] option = options[c];
+            for (int i = 0; i < size; i++) {
+                if (b.get(pos + i) != option[i])
+                    continue outer;
+            }
+
+            int id = candidateIds[size][c];
+            found[id >>> 6] |= 1L << id;
+            hit = true;
+        }
+
+        return hit;
+    }
+
+    private boolean satisfied(long[] found) {
+        outer:
+        for (long[] needed : required) {
+            for (int w = 0; w < words; w++) {
+                if ((found[w] & needed[w]) != needed[w])
+                    continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] encode(String value) {
+        // Class files store strings as modified UTF8, the same format used by DataOutput
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new DataOutputStream(out).writeUTF(value);
+            byte[] bytes = out.toByteArray();
+            return Arrays.copyOfRange(bytes, 2, bytes.length);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static int readUnsignedShort(ByteBuffer b, int pos) {
+        return ((b.get(pos) & 0xFF) << 8) | (b.get(pos + 1) & 0xFF);
+    }
+
+    private static int readInt(ByteBuffer b, int pos) {
+        return ((b.get(pos) & 0xFF) << 24) | ((b.get(pos + 1) & 0xFF) << 16) | ((b.get(pos + 2) & 0xFF) << 8) | (b.get(pos + 3) & 0xFF);
+    }
+}
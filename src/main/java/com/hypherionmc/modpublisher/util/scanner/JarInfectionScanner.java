@@ -9,183 +9,447 @@ package com.hypherionmc.modpublisher.util.scanner;
 import com.hypherionmc.modpublisher.util.CommonUtil;
 import org.gradle.api.Project;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.tree.*;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.ZipFile;
-
-import static org.objectweb.asm.Opcodes.*;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * @author HypherionSA
  * Contains code copied from https://github.com/MCRcortex/nekodetector/blob/master/src/main/java/me/cortex/jarscanner/Detector.java
- * with permission
+ * with permission. The signatures themselves live in {@link SignatureDatabase}
  */
 public class JarInfectionScanner {
 
-    public static void scan(Project project, Object file) throws Exception {
+    // Every digest of an inspection, computed in the same pass over the file
+    private static final String[] DIGESTS = { ArtifactInspection.SHA1, ArtifactInspection.SHA256, ArtifactInspection.SHA512 };
+
+    public static ScanStatistics scan(Project project, Object file) throws Exception {
+        return scan(project, file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Scan a jar for the presence of fractureiser
+     * @param project The project the jar belongs to
+     * @param file The file, task or string location of the jar
+     * @param threads The number of threads to scan classes with. 1 or less scans on the calling thread
+     * @return Statistics about the classes that were scanned. A JSON report of the scan is written to {@code build/modpublisher/scan}
+     * @throws Exception If the jar is infected, or could not be fully scanned
+     */
+    public static ScanStatistics scan(Project project, Object file, int threads) throws Exception {
         File jarFile = CommonUtil.resolveFile(project, file);
+        ScanStatistics statistics = new ScanStatistics();
 
         if (jarFile != null) {
             project.getLogger().lifecycle("Scanning {} for presence of fractureiser", jarFile.getAbsolutePath());
-            ZipFile zipFile = new ZipFile(jarFile);
-            scan(zipFile, project);
-            zipFile.close();
+            ScanOptions options = new ScanOptions().threads(threads).stopAtFirstFinding(false);
+            ScanResult result = check(jarFile, options, statistics);
+
+            File report = project.getLayout().getBuildDirectory().file("modpublisher/scan/" + jarFile.getName() + ".json").get().getAsFile();
+            ScanReport.write(result, report);
+
+            if (!result.isClean())
+                throw new Exception(result.getMessage() + ". See " + report.getAbsolutePath());
+
+            if (statistics.getNestedJarsSkipped() > 0)
+                project.getLogger().warn("{} jars nested in {} were not scanned, they are nested deeper than {} levels", statistics.getNestedJarsSkipped(), jarFile.getName(), options.getNestedJarDepth());
+
+            project.getLogger().info(
+                    "Scanned {} classes, {} of which were ruled out by the constant pool prefilter",
+                    statistics.getClassesScanned(),
+                    statistics.getClassesPrefiltered()
+            );
         }
+
+        return statistics;
     }
 
-    private static void scan(ZipFile file, Project project) {
-        try {
-            boolean matches = file.stream()
-                    .filter(entry -> entry.getName().endsWith(".class"))
-                    .anyMatch(entry -> {
-                        try {
-                            return scanClass(readAllBytes(file.getInputStream(entry)));
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
-                    });
-            try {
-                file.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            if (!matches)
-                return;
-            throw new Exception("!!!! " + file.getName() + " is infected with fractureiser");
-        } catch (Exception e) {
-            project.getLogger().error("Failed to scan {}", file.getName(), e);
-        }
-    }
-
-    private static final AbstractInsnNode[] SIG1 = new AbstractInsnNode[] {
-            new TypeInsnNode(NEW, "java/lang/String"),
-            new MethodInsnNode(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V"),
-            new TypeInsnNode(NEW, "java/lang/String"),
-            new MethodInsnNode(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V"),
-            new MethodInsnNode(INVOKESTATIC, "java/lang/Class", "forName", "(Ljava/lang/String;)Ljava/lang/Class;"),
-            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/Class", "getConstructor", "([Ljava/lang/Class;)Ljava/lang/reflect/Constructor;"),
-            new MethodInsnNode(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V"),
-            new MethodInsnNode(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V"),
-            new MethodInsnNode(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V"),
-            new MethodInsnNode(INVOKESPECIAL, "java/net/URL", "<init>", "(Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;)V"),
-            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/reflect/Constructor", "newInstance", "([Ljava/lang/Object;)Ljava/lang/Object;"),
-            new MethodInsnNode(INVOKESTATIC, "java/lang/Class", "forName", "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;"),
-            new MethodInsnNode(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V"),
-            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/Class", "getMethod", "(Ljava/lang/String;[Ljava/lang/Class;)Ljava/lang/reflect/Method;"),
-            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/reflect/Method", "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;"),
-    };
-
-    private static final AbstractInsnNode[] SIG2 = new AbstractInsnNode[] {
-            new MethodInsnNode(INVOKESTATIC, "java/lang/Runtime", "getRuntime", "()Ljava/lang/Runtime;"),
-            new MethodInsnNode(INVOKESTATIC, "java/util/Base64", "getDecoder", "()Ljava/util/Base64$Decoder;"),
-            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/String", "INVOKEVIRTUAL", "(Ljava/lang/String;)Ljava/lang/String;"),//TODO:FIXME: this might not be in all of them
-            new MethodInsnNode(INVOKEVIRTUAL, "java/util/Base64$Decoder", "decode", "(Ljava/lang/String;)[B"),
-            new MethodInsnNode(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V"),
-            new MethodInsnNode(INVOKEVIRTUAL, "java/io/File", "getPath", "()Ljava/lang/String;"),
-            new MethodInsnNode(INVOKEVIRTUAL, "java/lang/Runtime", "exec", "([Ljava/lang/String;)Ljava/lang/Process;"),
-    };
-    private static boolean same(AbstractInsnNode a, AbstractInsnNode b) {
-        if (a instanceof TypeInsnNode) {
-            return ((TypeInsnNode)a).desc.equals(((TypeInsnNode)b).desc);
-        }
-        if (a instanceof MethodInsnNode) {
-            return ((MethodInsnNode)a).owner.equals(((MethodInsnNode)b).owner) && ((MethodInsnNode)a).desc.equals(((MethodInsnNode)b).desc);
-        }
-        if (a instanceof InsnNode) {
-            return true;
-        }
-        throw new IllegalArgumentException("TYPE NOT ADDED");
-    }
-
-    private static boolean scanClass(byte[] clazz) {
-        ClassReader reader = new ClassReader(clazz);
-        ClassNode node = new ClassNode();
+    /**
+     * Scan a jar for the presence of fractureiser, without logging anything
+     * @param jarFile The jar to scan
+     * @param options The settings to scan with
+     * @return The outcome of the scan
+     */
+    public static ScanResult check(File jarFile, ScanOptions options) throws IOException {
+        return check(jarFile, options, new ScanStatistics());
+    }
+
+    /**
+     * Scan a jar for the presence of fractureiser, without logging anything
+     * @param jarFile The jar to scan
+     * @param options The settings to scan with
+     * @param statistics The statistics to record scanned classes in
+     * @return True if any class in the jar is infected
+     * @throws ScanLimitException If the scan hit one of its limits before it could finish
+     */
+    public static boolean isInfected(File jarFile, ScanOptions options, ScanStatistics statistics) throws IOException {
+        ScanResult result = check(jarFile, options, statistics);
+        if (result.getStatus() == ScanResult.Status.LIMIT_EXCEEDED)
+            throw new ScanLimitException(result.getLimit(), result.getEntry(), result.getMessage());
+
+        return result.getStatus() == ScanResult.Status.INFECTED;
+    }
+
+    /**
+     * Scan several jars for the presence of fractureiser, all at the same time.
+     * The classes of every jar are scanned on a single pool, so the slowest jar decides how long it takes
+     * @param jarFiles The jars to scan
+     * @param options The settings to scan with. The thread count applies to all jars together
+     * @return The outcome of each scan, in the same order as the jars
+     */
+    public static List<ScanResult> check(List<File> jarFiles, ScanOptions options) throws IOException {
+        List<ScanStatistics> statistics = new ArrayList<>(jarFiles.size());
+        for (int i = 0; i < jarFiles.size(); i++) {
+            statistics.add(new ScanStatistics());
+        }
+        return check(jarFiles, options, statistics);
+    }
+
+    /**
+     * Scan a jar for the presence of fractureiser, without logging anything
+     * @param jarFile The jar to scan
+     * @param options The settings to scan with
+     * @param statistics The statistics to record scanned classes in
+     * @return The outcome of the scan
+     */
+    public static ScanResult check(File jarFile, ScanOptions options, ScanStatistics statistics) throws IOException {
+        return check(Collections.singletonList(jarFile), options, Collections.singletonList(statistics)).get(0);
+    }
+
+    private static List<ScanResult> check(List<File> jarFiles, ScanOptions options, List<ScanStatistics> statistics) throws IOException {
+        List<ScanResult> results = new ArrayList<>(jarFiles.size());
+        for (ArtifactInspection inspection : inspect(jarFiles, options, statistics, false, null)) {
+            results.add(inspection.getScanResult());
+        }
+        return results;
+    }
+
+    /**
+     * Read a jar once for everything the publish steps need: the names of its entries, the digests of the file,
+     * and optionally a malware scan. The jar is hashed while it is still open for the scan, so it is only opened once
+     * @param jarFile The jar to inspect
+     * @param options The settings to scan with, or null to only index and hash the jar
+     * @return The inspection of the jar
+     */
+    public static ArtifactInspection inspect(File jarFile, ScanOptions options) throws IOException {
+        return inspect(Collections.singletonList(jarFile), options).get(0);
+    }
+
+    /**
+     * Inspect several jars at the same time, see {@link #inspect(File, ScanOptions)}
+     * @param jarFiles The jars to inspect
+     * @param options The settings to scan with, or null to only index and hash the jars
+     * @return The inspection of each jar, in the same order as the jars
+     */
+    public static List<ArtifactInspection> inspect(List<File> jarFiles, ScanOptions options) throws IOException {
+        return inspect(jarFiles, options, sha256 -> null);
+    }
+
+    /**
+     * Inspect several jars at the same time, reusing earlier inspections of jars with the same content.
+     * Every jar is hashed first, in the same pass that indexes and scans it. A jar that the lookup knows
+     * is not scanned again
+     * @param jarFiles The jars to inspect
+     * @param options The settings to scan with, or null to only index and hash the jars
+     * @param known Looks up an earlier inspection, with the same options, by the SHA-256 of a jar. Returns null when there is none
+     * @return The inspection of each jar, in the same order as the jars
+     */
+    public static List<ArtifactInspection> inspect(List<File> jarFiles, ScanOptions options, Function<String, ArtifactInspection> known) throws IOException {
+        List<ScanStatistics> statistics = new ArrayList<>(jarFiles.size());
+        for (int i = 0; i < jarFiles.size(); i++) {
+            statistics.add(new ScanStatistics());
+        }
+        return inspect(jarFiles, options, statistics, true, known);
+    }
+
+    private static List<ArtifactInspection> inspect(List<File> jarFiles, ScanOptions options, List<ScanStatistics> statistics, boolean index, Function<String, ArtifactInspection> known) throws IOException {
+        if (options != null && options.getCleanClassStore() != null)
+            options.getCleanClassStore().useSignatures(options.getSignatures().getVersion());
+
+        int count = jarFiles.size();
+        ScanContext[] contexts = new ScanContext[count];
+        ArtifactInspection[] reused = new ArtifactInspection[count];
+        List<JarSource> sources = new ArrayList<>(count);
+        List<JarScanTask> tasks = new ArrayList<>(count);
+        List<Set<String>> entries = new ArrayList<>(count);
+        List<Map<String, String>> digests = new ArrayList<>(count);
+        List<Map<String, byte[]>> descriptors = new ArrayList<>(count);
+
         try {
-            reader.accept(node, 0);
-        } catch (Exception e) {
-            return false;//Yes this is very hacky but should never happen with valid clasees
-        }
-        for (MethodNode method : node.methods) {
-            {
-                //Method 1, this is a hard detect, if it matches this it is 100% chance infected
-                boolean match = true;
-                int j = 0;
-                for (int i = 0; i < method.instructions.size() && j < SIG1.length; i++) {
-                    if (method.instructions.get(i).getOpcode() == -1) {
-                        continue;
-                    }
-                    if (method.instructions.get(i).getOpcode() == SIG1[j].getOpcode()) {
-                        if (!same(method.instructions.get(i), SIG1[j++])) {
-                            match = false;
-                            break;
-                        }
-                    }
-                }
-                if (j != SIG1.length) {
-                    match = false;
+            for (int i = 0; i < count; i++) {
+                JarSource source = JarSource.open(jarFiles.get(i));
+                sources.add(source);
+
+                if (index) {
+                    // Hashed before the scan, so a copy of a jar that was already inspected is not scanned again
+                    Map<String, String> digest = digest(source);
+                    digests.add(digest);
+                    reused[i] = known == null ? null : known.apply(digest.get(ArtifactInspection.SHA256));
                 }
-                if (match) {
-                    return true;
+
+                if (options != null && reused[i] == null) {
+                    contexts[i] = new ScanContext(jarFiles.get(i).getName(), options, statistics.get(i));
+                    tasks.add(new JarScanTask(source, contexts[i]));
                 }
             }
 
-            {
-                //Method 2, this is a near hard detect, if it matches this it is 95% chance infected
-                boolean match = false;
-                outer:
-                for (int q = 0; q < method.instructions.size(); q++) {
-                    int j = 0;
-                    for (int i = q; i < method.instructions.size() && j < SIG2.length; i++) {
-                        if (method.instructions.get(i).getOpcode() != SIG2[j].getOpcode()) {
-                            continue;
-                        }
-
-                        if (method.instructions.get(i).getOpcode() == SIG2[j].getOpcode()) {
-                            if (!same(method.instructions.get(i), SIG2[j++])) {
-                                continue outer;
-                            }
-                        }
-                    }
-                    if (j == SIG2.length) {
-                        match = true;
-                        break;
-                    }
+            if (!tasks.isEmpty())
+                run(tasks, options.getThreads());
+
+            if (index) {
+                for (int i = 0; i < count; i++) {
+                    entries.add(reused[i] != null ? reused[i].getEntries() : entryNames(sources.get(i)));
+                    descriptors.add(reused[i] != null ? reused[i].getDescriptors() : descriptors(sources.get(i)));
                 }
-                if (match) {
-                    return true;
+            }
+        } finally {
+            close(sources);
+        }
+
+        if (options != null && options.getCleanClassStore() != null)
+            options.getCleanClassStore().save();
+
+        List<ArtifactInspection> inspections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            File jarFile = jarFiles.get(i);
+            ScanResult result = reused[i] != null ? reused[i].getScanResult() : contexts[i] != null ? contexts[i].getResult() : null;
+            inspections.add(new ArtifactInspection(
+                    jarFile,
+                    jarFile.length(),
+                    jarFile.lastModified(),
+                    index ? entries.get(i) : Collections.emptySet(),
+                    index ? digests.get(i) : Collections.emptyMap(),
+                    index ? descriptors.get(i) : Collections.emptyMap(),
+                    result
+            ));
+        }
+        return inspections;
+    }
+
+    /**
+     * Read the mod descriptors in the root of the jar, so the metadata can be parsed without opening the jar again.
+     * Descriptors larger than {@link ArtifactInspection#MAX_DESCRIPTOR_SIZE} are left out
+     */
+    private static Map<String, byte[]> descriptors(JarSource source) throws IOException {
+        Map<String, byte[]> descriptors = new HashMap<>();
+        for (JarSource.Entry entry : source.getEntries()) {
+            if (!ArtifactInspection.DESCRIPTORS.contains(entry.getName()) || entry.getSize() > ArtifactInspection.MAX_DESCRIPTOR_SIZE)
+                continue;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.max(entry.getSize(), 0));
+            byte[] buffer = new byte[8192];
+            try (InputStream stream = source.getInputStream(entry)) {
+                int read;
+                while ((read = stream.read(buffer)) != -1 && out.size() <= ArtifactInspection.MAX_DESCRIPTOR_SIZE) {
+                    out.write(buffer, 0, read);
                 }
             }
+
+            // The declared size can not be trusted
+            if (out.size() <= ArtifactInspection.MAX_DESCRIPTOR_SIZE)
+                descriptors.put(entry.getName(), out.toByteArray());
         }
-        return false;
+        return descriptors;
     }
 
-    private static byte[] readAllBytes(InputStream inputStream) throws IOException {
-        final int bufLen = 1024;
-        byte[] buf = new byte[bufLen];
-        int readLen;
-        IOException exception = null;
+    private static Set<String> entryNames(JarSource source) {
+        Set<String> names = new HashSet<>(source.getEntries().size() * 2);
+        for (JarSource.Entry entry : source.getEntries()) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    private static Map<String, String> digest(JarSource source) throws IOException {
+        MessageDigest[] digests = createDigests();
+        source.digest(digests);
+        return toHex(digests);
+    }
 
+    private static MessageDigest[] createDigests() {
+        MessageDigest[] digests = new MessageDigest[DIGESTS.length];
         try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            for (int i = 0; i < DIGESTS.length; i++) {
+                digests[i] = MessageDigest.getInstance(DIGESTS[i]);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return digests;
+    }
 
-            while ((readLen = inputStream.read(buf, 0, bufLen)) != -1)
-                outputStream.write(buf, 0, readLen);
+    private static Map<String, String> toHex(MessageDigest[] digests) {
+        Map<String, String> hex = new HashMap<>();
+        for (int i = 0; i < DIGESTS.length; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digests[i].digest()) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            hex.put(DIGESTS[i], builder.toString());
+        }
+        return hex;
+    }
+
+    private static void run(List<JarScanTask> tasks, int threads) {
+        // Not worth spinning up a pool for
+        if (threads <= 1) {
+            for (JarScanTask task : tasks) {
+                task.invoke();
+            }
+            return;
+        }
 
-            return outputStream.toByteArray();
-        } catch (IOException e) {
-            exception = e;
-            throw e;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
         } finally {
-            if (exception == null) inputStream.close();
-            else try {
-                inputStream.close();
+            pool.shutdownNow();
+            awaitTermination(pool);
+        }
+    }
+
+    private static void close(List<JarSource> sources) throws IOException {
+        IOException exception = null;
+        for (JarSource source : sources) {
+            try {
+                source.close();
             } catch (IOException e) {
-                exception.addSuppressed(e);
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null)
+            throw exception;
+    }
+
+    private static void awaitTermination(ForkJoinPool pool) {
+        // The jar is unmapped once the scan returns, so no worker may still be reading from it.
+        // Workers always finish the class they are on, so this never takes long
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.MINUTES))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
         }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Identifies the bundled signature set. Changes whenever a signature is added or modified,
+     * so results of earlier scans can be invalidated
+     */
+    public static final String SIGNATURE_VERSION = SignatureDatabase.bundled().getVersion();
+
+    /**
+     * Scan a single class for the fractureiser signatures.
+     * The class is streamed through the signature automaton, skipping debug and frame data,
+     * so no tree is ever built for it
+     * @param clazz The raw class file bytes
+     * @return True if any method of the class matches a signature
+     */
+    public static boolean scanClass(byte[] clazz) {
+        return scanClass(clazz, new ScanStatistics());
+    }
+
+    /**
+     * Scan a single class for the fractureiser signatures.
+     * Classes whose constant pool cannot satisfy any signature are skipped without decoding their methods
+     * @param clazz The raw class file bytes
+     * @param statistics The statistics to record the class in
+     * @return True if any method of the class matches a signature
+     */
+    public static boolean scanClass(byte[] clazz, ScanStatistics statistics) {
+        return scanClass(clazz, SignatureDatabase.bundled(), statistics);
+    }
+
+    /**
+     * Scan a single class for a set of signatures
+     * @param clazz The raw class file bytes
+     * @param signatures The signatures to scan for
+     * @param statistics The statistics to record the class in
+     * @return True if any method of the class matches a signature
+     */
+    public static boolean scanClass(byte[] clazz, SignatureDatabase signatures, ScanStatistics statistics) {
+        return findMatches(clazz, 0, clazz.length, null, signatures, statistics) != null;
+    }
+
+    /**
+     * Find the methods of a class that match a signature
+     * @param entry The name of the class entry, used for the findings
+     * @return Every method of the class that matches a signature, or null if it is clean
+     */
+    static List<ScanFinding> findMatches(byte[] clazz, int offset, int length, String entry, SignatureDatabase signatures, ScanStatistics statistics) {
+        statistics.classScanned();
+
+        if (!signatures.getPrefilter().mayMatch(clazz, offset, length)) {
+            statistics.classPrefiltered();
+            return null;
+        }
+
+        return match(clazz, offset, length, entry, signatures);
+    }
+
+    /**
+     * Find the methods of a class that is still in the jar it was read from that match a signature. The class
+     * is only copied into the buffer when the prefilter cannot rule it out, since ASM needs it as an array
+     * @param entry The name of the class entry, used for the findings
+     * @return Every method of the class that matches a signature, or null if it is clean
+     */
+    static List<ScanFinding> findMatches(ByteBuffer clazz, ScanBuffer buffer, String entry, SignatureDatabase signatures, ScanStatistics statistics) {
+        statistics.classScanned();
+
+        if (!signatures.getPrefilter().mayMatch(clazz, clazz.position(), clazz.remaining())) {
+            statistics.classPrefiltered();
+            return null;
+        }
+
+        // Classes that were inflated are already in an array
+        if (clazz.hasArray())
+            return match(clazz.array(), clazz.arrayOffset() + clazz.position(), clazz.remaining(), entry, signatures);
+
+        int length = buffer.copy(clazz);
+        return match(buffer.getData(), 0, length, entry, signatures);
+    }
+
+    private static List<ScanFinding> match(byte[] clazz, int offset, int length, String entry, SignatureDatabase signatures) {
+        ClassReader reader = new ClassReader(clazz, offset, length);
+        ScannerClassVisitor visitor = new ScannerClassVisitor(signatures.getAutomaton(), entry);
+
+        try {
+            reader.accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        } catch (Exception e) {
+            return null;//Yes this is very hacky but should never happen with valid clasees
+        }
+
+        return visitor.getFindings();
     }
 }
@@ -0,0 +1,89 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author HypherionSA
+ * Fork/Join task that scans a whole jar. The classes of the jar, its resources when those are
+ * inspected too, and every nested jar are scanned side by side, all sharing the same {@link ScanContext} to stop early once the outcome is decided.
+ * <p>
+ * When not running inside a pool, everything is scanned on the calling thread instead.
+ */
+class JarScanTask extends RecursiveAction {
+
+    private final List<RecursiveAction> tasks;
+    private final ScanContext context;
+
+    JarScanTask(JarSource source, ScanContext context) {
+        this.context = context;
+        this.tasks = createTasks(source, context, 0);
+    }
+
+    /**
+     * Split the entries of a jar into tasks. Jars nested deeper than the configured depth are counted as skipped,
+     * and are inspected as resources when resources are scanned
+     * @param source The jar to scan
+     * @param context The scan the jar is part of
+     * @param depth How deep the jar is nested, 0 for the jar being scanned
+     * @return The tasks for the classes, the resources and the nested jars, in that order
+     */
+    static List<RecursiveAction> createTasks(JarSource source, ScanContext context, int depth) {
+        ScanOptions options = context.getOptions();
+        List<JarSource.Entry> classes = new ArrayList<>();
+        List<JarSource.Entry> resources = new ArrayList<>();
+        List<RecursiveAction> jars = new ArrayList<>();
+
+        for (JarSource.Entry entry : source.getEntries()) {
+            String name = entry.getName();
+            if (name.endsWith(".class")) {
+                classes.add(entry);
+                continue;
+            }
+
+            if (name.endsWith(".jar")) {
+                if (depth < options.getNestedJarDepth()) {
+                    jars.add(new NestedJarScanTask(source, entry, context, depth + 1));
+                    continue;
+                }
+                context.getStatistics().nestedJarSkipped();
+            }
+
+            if (options.isScanResources() && !name.endsWith("/"))
+                resources.add(entry);
+        }
+
+        List<RecursiveAction> tasks = new ArrayList<>(jars.size() + 2);
+        tasks.add(new ClassScanTask(source, classes, context));
+        if (!resources.isEmpty())
+            tasks.add(new ResourceScanTask(source, resources, context));
+        tasks.addAll(jars);
+        return tasks;
+    }
+
+    @Override
+    protected void compute() {
+        context.start();
+        try {
+            if (!inForkJoinPool()) {
+                for (RecursiveAction task : tasks) {
+                    if (context.isDone())
+                        return;
+                    task.invoke();
+                }
+                return;
+            }
+
+            invokeAll(tasks);
+        } finally {
+            context.finish();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * @author HypherionSA
+ * The entries of a jar that is being scanned.
+ * <p>
+ * Jars are memory mapped where possible, see {@link MappedJarSource}. Jars that cannot be
+ * mapped, like ZIP64 archives, are read through {@link java.util.zip.ZipFile} instead.
+ * <p>
+ * A source is shared by all workers of a scan, and must only be closed once all of them are done.
+ */
+abstract class JarSource implements Closeable {
+
+    private final Queue<ScanBuffer> buffers;
+    private final boolean sharedBuffers;
+
+    /**
+     * @param parent The jar this one is nested in, or null. A nested jar shares the buffers of its parent
+     */
+    JarSource(JarSource parent) {
+        this.buffers = parent != null ? parent.buffers : new ConcurrentLinkedQueue<>();
+        this.sharedBuffers = parent != null;
+    }
+
+    /**
+     * Open a jar for scanning
+     * @param file The jar to open
+     * @return The entries of the jar
+     */
+    static JarSource open(File file) throws IOException {
+        JarSource source = MappedJarSource.open(file);
+        return source != null ? source : new ZipFileJarSource(file);
+    }
+
+    /**
+     * Open a jar nested inside another jar, from its central directory like any other jar. Nested jars that
+     * cannot be read from memory are written to a temporary file and read through {@link java.util.zip.ZipFile}
+     * @param data The whole nested jar
+     * @param path The name of the nested jar. It is put in front of the names of its entries, like {@code outer.jar!/inner/Entry.class}
+     * @param parent The jar the nested jar was read from
+     * @return The entries of the nested jar
+     */
+    static JarSource open(byte[] data, String path, JarSource parent) throws IOException {
+        JarSource source = MappedJarSource.open(ByteBuffer.wrap(data), path + "!/", parent);
+        if (source != null)
+            return source;
+
+        File file = File.createTempFile("modpublisher-nested", ".jar");
+        try {
+            Files.write(file.toPath(), data);
+            return new ZipFileJarSource(file, path + "!/", parent);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file.toPath());
+            throw e;
+        }
+    }
+
+    /**
+     * @return All entries of the jar, in the order of the central directory
+     */
+    abstract List<Entry> getEntries();
+
+    /**
+     * Open a stream to the uncompressed content of an entry
+     * @param entry The entry to read
+     * @return The stream. The caller is responsible for closing it
+     */
+    abstract InputStream getInputStream(Entry entry) throws IOException;
+
+    /**
+     * Read the bytes of a class entry
+     * @param entry The class entry
+     * @param buffer Buffer of the calling worker, the class is read into it if needed
+     * @param context The scan the class is part of
+     * @return The bytes of the class, from its position to its limit. Only valid until the buffer is used again
+     * @throws ScanLimitException If the class inflates to more than the limits allow
+     */
+    abstract ByteBuffer readClass(Entry entry, ScanBuffer buffer, ScanContext context) throws IOException;
+
+    /**
+     * Hash the raw bytes of the whole jar, as they are stored on disk
+     * @param digests The digests to update, all in the same pass
+     */
+    abstract void digest(MessageDigest... digests) throws IOException;
+
+    /**
+     * @return A buffer for the calling worker. Hand it back with {@link #releaseBuffer(ScanBuffer)}
+     */
+    ScanBuffer acquireBuffer() {
+        ScanBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : new ScanBuffer();
+    }
+
+    void releaseBuffer(ScanBuffer buffer) {
+        buffers.add(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The buffers of a nested jar are closed with its parent
+        if (sharedBuffers)
+            return;
+
+        ScanBuffer buffer;
+        while ((buffer = buffers.poll()) != null) {
+            buffer.close();
+        }
+    }
+
+    /**
+     * A single entry of the jar, as read from the central directory
+     */
+    static class Entry {
+        private final String name;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+
+        Entry(String name, long crc, long size, long compressedSize) {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getCrc() {
+            return crc;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getCompressedSize() {
+            return compressedSize;
+        }
+    }
+}
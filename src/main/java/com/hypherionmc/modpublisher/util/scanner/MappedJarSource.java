@@ -0,0 +1,350 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * @author HypherionSA
+ * Reads a jar by memory mapping it, and parsing the central directory ourselves.
+ * <p>
+ * The jar lives outside the heap, and entries are read straight from the mapping. Stored
+ * entries are run through the constant pool prefilter in place, and are only copied when the
+ * prefilter cannot rule them out. Compressed entries are inflated into the buffer of the worker.
+ * <p>
+ * Jars nested inside another jar are read the same way, from a heap buffer instead of a mapping.
+ * <p>
+ * Only plain zip archives up to 2GB are supported. For anything else, {@link #open(File)}
+ * returns null so the jar is read through {@link java.util.zip.ZipFile} instead.
+ */
+final class MappedJarSource extends JarSource {
+
+    private static final int END_HEADER = 0x06054B50;
+    private static final int ZIP64_END_LOCATOR = 0x07064B50;
+    private static final int CENTRAL_HEADER = 0x02014B50;
+    private static final int LOCAL_HEADER = 0x04034B50;
+
+    private static final int DIGEST_CHUNK = 64 * 1024;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private final ByteBuffer mapping;
+    private final List<Entry> entries;
+
+    private MappedJarSource(ByteBuffer mapping, List<Entry> entries, JarSource parent) {
+        super(parent);
+        this.mapping = mapping;
+        this.entries = entries;
+    }
+
+    /**
+     * Map a jar into memory
+     * @param file The jar to map
+     * @return The mapped jar, or null if it has to be read some other way
+     */
+    static MappedJarSource open(File file) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                return null;
+
+            // The mapping stays valid after the channel is closed
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        List<Entry> entries = readCentralDirectory(mapping, "");
+        if (entries == null) {
+            unmap(mapping);
+            return null;
+        }
+
+        return new MappedJarSource(mapping, entries, null);
+    }
+
+    /**
+     * Read a jar that is already in memory, like one nested inside another jar
+     * @param data The whole jar
+     * @param prefix Put in front of the names of all entries
+     * @param parent The jar the data was read from, its buffers are shared
+     * @return The jar, or null if it has to be read some other way
+     */
+    static MappedJarSource open(ByteBuffer data, String prefix, JarSource parent) {
+        List<Entry> entries = readCentralDirectory(data, prefix);
+        return entries != null ? new MappedJarSource(data, entries, parent) : null;
+    }
+
+    @Override
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    InputStream getInputStream(Entry entry) throws IOException {
+        MappedEntry mapped = (MappedEntry) entry;
+        InputStream stream = new ByteBufferInputStream(data(mapped));
+
+        switch (mapped.method) {
+            case STORED:
+                return stream;
+            case DEFLATED:
+                return new EntryInflaterInputStream(stream);
+            default:
+                throw new ZipException("Unsupported compression method " + mapped.method + " for " + entry.getName());
+        }
+    }
+
+    @Override
+    ByteBuffer readClass(Entry entry, ScanBuffer buffer, ScanContext context) throws IOException {
+        MappedEntry mapped = (MappedEntry) entry;
+        ByteBuffer data = data(mapped);
+
+        switch (mapped.method) {
+            case STORED:
+                // Nothing to inflate, so the class is read straight from the mapping
+                context.countBytes(entry.getName(), data.remaining());
+                return data;
+            case DEFLATED:
+                int length = buffer.inflate(data, entry.getSize(), context.maxInflatedSize(entry.getCompressedSize()));
+                if (length == -1)
+                    throw context.entryTooLarge(entry.getName(), entry.getCompressedSize());
+                context.countBytes(entry.getName(), length);
+
+                return ByteBuffer.wrap(buffer.getData(), 0, length);
+            default:
+                throw new ZipException("Unsupported compression method " + mapped.method + " for " + entry.getName());
+        }
+    }
+
+    @Override
+    void digest(MessageDigest... digests) {
+        ByteBuffer buffer = mapping.duplicate();
+
+        // In chunks, so every digest reads a chunk while it is still in the CPU cache
+        for (int position = 0; position < buffer.capacity(); position += DIGEST_CHUNK) {
+            buffer.limit(Math.min(buffer.capacity(), position + DIGEST_CHUNK));
+            for (MessageDigest digest : digests) {
+                buffer.position(position);
+                digest.update(buffer);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        if (mapping instanceof MappedByteBuffer)
+            unmap((MappedByteBuffer) mapping);
+    }
+
+    private ByteBuffer data(MappedEntry entry) throws ZipException {
+        ByteBuffer buffer = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int header = entry.localHeaderOffset;
+
+        if (header + 30 > buffer.limit() || buffer.getInt(header) != LOCAL_HEADER)
+            throw new ZipException("Invalid local header for " + entry.getName());
+
+        long start = (long) header + 30 + (buffer.getShort(header + 26) & 0xFFFF) + (buffer.getShort(header + 28) & 0xFFFF);
+        long end = start + entry.getCompressedSize();
+        if (end > buffer.limit())
+            throw new ZipException("Entry " + entry.getName() + " extends past the end of the jar");
+
+        buffer.limit((int) end);
+        buffer.position((int) start);
+        return buffer.slice();
+    }
+
+    private static List<Entry> readCentralDirectory(ByteBuffer buffer, String prefix) {
+        buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int size = buffer.limit();
+
+        // The end header is followed by a comment of up to 64KB
+        int end = -1;
+        for (int pos = size - 22; pos >= Math.max(0, size - 22 - 0xFFFF); pos--) {
+            if (buffer.getInt(pos) == END_HEADER) {
+                end = pos;
+                break;
+            }
+        }
+
+        if (end == -1)
+            return null;
+
+        // ZIP64 archives are left to ZipFile
+        if (end >= 20 && buffer.getInt(end - 20) == ZIP64_END_LOCATOR)
+            return null;
+
+        int count = buffer.getShort(end + 10) & 0xFFFF;
+        long directorySize = buffer.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+
+        // Jars can have data prepended to them, which shifts all offsets
+        long base = end - directorySize - directoryOffset;
+        if (base < 0)
+            return null;
+
+        List<Entry> entries = new ArrayList<>(count);
+        long pos = base + directoryOffset;
+
+        for (int i = 0; i < count; i++) {
+            if (pos + 46 > end || buffer.getInt((int) pos) != CENTRAL_HEADER)
+                return null;
+
+            int p = (int) pos;
+            int flags = buffer.getShort(p + 8) & 0xFFFF;
+            int method = buffer.getShort(p + 10) & 0xFFFF;
+            long crc = buffer.getInt(p + 16) & 0xFFFFFFFFL;
+            long compressedSize = buffer.getInt(p + 20) & 0xFFFFFFFFL;
+            long entrySize = buffer.getInt(p + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(p + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(p + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(p + 32) & 0xFFFF;
+            long localHeaderOffset = buffer.getInt(p + 42) & 0xFFFFFFFFL;
+
+            // Encrypted entries and ZIP64 sizes are left to ZipFile
+            if ((flags & 1) != 0 || compressedSize == 0xFFFFFFFFL || entrySize == 0xFFFFFFFFL || localHeaderOffset == 0xFFFFFFFFL)
+                return null;
+
+            if (p + 46 + nameLength > end)
+                return null;
+
+            byte[] name = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(p + 46);
+            nameBuffer.get(name);
+
+            entries.add(new MappedEntry(
+                    prefix + new String(name, StandardCharsets.UTF_8),
+                    crc,
+                    entrySize,
+                    compressedSize,
+                    method,
+                    (int) (base + localHeaderOffset)
+            ));
+
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Release a mapping right away, instead of whenever it is garbage collected.
+     * Until then the jar stays locked on Windows, which breaks rebuilding it in the same daemon.
+     * This is best effort, if the JVM does not allow it the mapping is left to the garbage collector
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            // Java 9 and newer
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Exception ignored) {}
+
+        try {
+            // Java 8
+            Method cleaner = buffer.getClass().getMethod("cleaner");
+            cleaner.setAccessible(true);
+            Object instance = cleaner.invoke(buffer);
+            if (instance != null)
+                instance.getClass().getMethod("clean").invoke(instance);
+        } catch (Exception ignored) {}
+    }
+
+    private static final class MappedEntry extends Entry {
+        private final int method;
+        private final int localHeaderOffset;
+
+        MappedEntry(String name, long crc, long size, long compressedSize, int method, int localHeaderOffset) {
+            super(name, crc, size, compressedSize);
+            this.method = method;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Inflates an entry, supplying the extra dummy byte needed without a zlib header, like ZipFile does
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+
+        EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true), 8192);
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof)
+                throw new EOFException("Unexpected end of compressed entry");
+
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            inf.end();
+        }
+    }
+}
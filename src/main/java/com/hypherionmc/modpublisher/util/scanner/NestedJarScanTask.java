@@ -0,0 +1,100 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author HypherionSA
+ * Fork/Join task that scans a jar nested inside the jar being scanned, like the ones found in
+ * {@code META-INF/jars} (Fabric) or {@code META-INF/jarjar} (Forge JarJar).
+ * <p>
+ * The nested jar is inflated into memory, within the limits of the scan, and read from its central directory like
+ * any other jar, see {@link JarSource#open(byte[], String, JarSource)}. Its classes, resources and jars are then
+ * scanned by the same tasks as those of the outer jar. Reading the local headers instead would let a crafted jar
+ * show the scanner different entries than the ones the loader reads from the central directory.
+ * <p>
+ * Entries are reported as {@code outer.jar!/inner/Entry.class}.
+ */
+class NestedJarScanTask extends RecursiveAction {
+
+    private final JarSource source;
+    private final JarSource.Entry entry;
+    private final ScanContext context;
+    private final int depth;
+
+    /**
+     * @param source The jar the nested jar is stored in
+     * @param entry The entry of the nested jar
+     * @param context The scan the nested jar is part of
+     * @param depth How deep the nested jar is nested, 1 for a jar inside the jar being scanned
+     */
+    NestedJarScanTask(JarSource source, JarSource.Entry entry, ScanContext context, int depth) {
+        this.source = source;
+        this.entry = entry;
+        this.context = context;
+        this.depth = depth;
+    }
+
+    @Override
+    protected void compute() {
+        // Another worker already decided the outcome, no point in continuing
+        if (context.isDone())
+            return;
+
+        try (JarSource nested = open()) {
+            context.getStatistics().nestedJarScanned();
+            List<RecursiveAction> tasks = JarScanTask.createTasks(nested, context, depth);
+
+            // The nested jar is closed once all of its tasks are done
+            if (inForkJoinPool()) {
+                invokeAll(tasks);
+                return;
+            }
+
+            for (RecursiveAction task : tasks) {
+                if (context.isDone())
+                    return;
+                task.invoke();
+            }
+        } catch (ScanLimitException e) {
+            context.limitExceeded(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Inflate the nested jar into memory, against the limits of the scan
+     */
+    private JarSource open() throws IOException {
+        String name = entry.getName();
+        context.checkDeclaredSize(name, entry.getSize(), entry.getCompressedSize());
+
+        ScanBuffer buffer = source.acquireBuffer();
+        try {
+            int length;
+            try (InputStream stream = source.getInputStream(entry)) {
+                length = buffer.read(stream, entry.getSize(), context.maxInflatedSize(entry.getCompressedSize()));
+            }
+
+            if (length == -1)
+                throw context.entryTooLarge(name, entry.getCompressedSize());
+            context.countBytes(name, length);
+            context.checkDeclaredSize(name, length, entry.getCompressedSize());
+
+            // Copied out of the buffer, which is reused for the entries of the nested jar
+            return JarSource.open(Arrays.copyOf(buffer.getData(), length), name, source);
+        } finally {
+            source.releaseBuffer(buffer);
+        }
+    }
+}
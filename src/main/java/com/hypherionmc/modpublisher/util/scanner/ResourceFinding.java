@@ -0,0 +1,68 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+/**
+ * @author HypherionSA
+ * Something unusual found in a resource of a jar. Unlike a {@link ScanFinding}, this is a hint for a human
+ * to look at, and does not make the jar infected
+ */
+public final class ResourceFinding {
+
+    public enum Detector {
+        // A window of the resource is as random as compressed or encrypted data
+        ENTROPY,
+        // The resource is, or contains, a native executable
+        EXECUTABLE,
+        // The resource is, or contains, a Java class file
+        CLASS_FILE,
+        // The resource contains a long run of Base64 text
+        BASE64
+    }
+
+    private final String entry;
+    private final Detector detector;
+    private final long offset;
+    private final String detail;
+
+    ResourceFinding(String entry, Detector detector, long offset, String detail) {
+        this.entry = entry;
+        this.detector = detector;
+        this.offset = offset;
+        this.detail = detail;
+    }
+
+    /**
+     * @return The resource entry. Entries of nested jars are separated with {@code !/}
+     */
+    public String getEntry() {
+        return entry;
+    }
+
+    public Detector getDetector() {
+        return detector;
+    }
+
+    /**
+     * @return The offset in the inflated resource where the detector triggered
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return What the detector found, in a human readable form
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        return entry + " at offset " + offset + ": " + detail;
+    }
+}
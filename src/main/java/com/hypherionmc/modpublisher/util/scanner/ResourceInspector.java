@@ -0,0 +1,216 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @author HypherionSA
+ * Looks for payloads hidden in the resources of a jar, like the encoded stages of fractureiser style droppers.
+ * <p>
+ * Resources are handed over a chunk at a time while they are inflated, so they are never held in memory as a whole.
+ * All detectors run in a single pass over every byte:
+ * <ul>
+ *     <li>Shannon entropy of fixed windows, to find compressed or encrypted blobs in files that should not contain any</li>
+ *     <li>Magic numbers of class files and native executables, at the start of the resource or embedded in it</li>
+ *     <li>Long runs of Base64, including MIME style wrapped lines</li>
+ * </ul>
+ * Every detector reports at most once per resource. An inspector is reused for many resources, but only by one worker.
+ */
+final class ResourceInspector {
+
+    // Size of the windows the entropy is measured over
+    static final int ENTROPY_WINDOW = 4096;
+
+    // Bits per byte. Text is around 4.5 to 5, compressed and encrypted data comes close to 8
+    static final double ENTROPY_THRESHOLD = 7.5;
+
+    // Base64 characters in a row before a run is reported, around 1.5KB once decoded
+    static final int BASE64_THRESHOLD = 2048;
+
+    // Line breaks only continue a Base64 run after a line of at least this many characters, like MIME wrapping
+    private static final int BASE64_MIN_LINE = 60;
+
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+    private static final int ELF_MAGIC = 0x7F454C46;
+
+    // Compressed formats, jar signatures and keystores, where a high entropy is expected
+    private static final String[] COMPRESSED = {
+            ".png", ".jpg", ".jpeg", ".gif", ".webp", ".ogg", ".mp3", ".flac", ".zip", ".jar", ".gz", ".xz",
+            ".bz2", ".7z", ".nbt", ".mca", ".schem", ".schematic", ".litematic", ".woff", ".woff2", ".lzma", ".br",
+            ".rsa", ".dsa", ".ec", ".jks", ".p12"
+    };
+
+    // Native libraries bundled by mods, that are expected to be executables
+    private static final String[] NATIVE = { ".dll", ".so", ".dylib", ".jnilib", ".exe" };
+
+    private static final boolean[] BASE64 = new boolean[256];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) BASE64[c] = true;
+        for (char c = 'a'; c <= 'z'; c++) BASE64[c] = true;
+        for (char c = '0'; c <= '9'; c++) BASE64[c] = true;
+        BASE64['+'] = true;
+        BASE64['/'] = true;
+        BASE64['-'] = true;
+        BASE64['_'] = true;
+        BASE64['='] = true;
+    }
+
+    private final int[] histogram = new int[256];
+    private final List<ResourceFinding> findings = new ArrayList<>();
+
+    private String entry;
+    private boolean checkEntropy;
+    private boolean checkExecutable;
+    private long offset;
+    private int magic;
+
+    private int window;
+    private long base64Start;
+    private int base64Run;
+    private int lineLength;
+    private boolean base64Reported;
+    private boolean embeddedReported;
+
+    /**
+     * Start on a new resource
+     * @param entry The name of the resource entry
+     */
+    void start(String entry) {
+        String name = entry.toLowerCase(Locale.ROOT);
+
+        this.entry = entry;
+        this.checkEntropy = !endsWithAny(name, COMPRESSED);
+        this.checkExecutable = !endsWithAny(name, NATIVE);
+        this.offset = 0;
+        this.magic = 0;
+        this.window = 0;
+        this.base64Run = 0;
+        this.lineLength = 0;
+        this.base64Reported = false;
+        this.embeddedReported = false;
+        this.findings.clear();
+        if (checkEntropy)
+            Arrays.fill(histogram, 0);
+    }
+
+    /**
+     * Inspect the next chunk of the resource
+     */
+    void update(byte[] data, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            int b = data[i] & 0xFF;
+
+            magic = (magic << 8) | b;
+            if (offset == 3) {
+                checkHeader();
+            } else if (offset > 3 && !embeddedReported && checkExecutable && (magic == CLASS_MAGIC || magic == ELF_MAGIC)) {
+                embeddedReported = true;
+                add(magic == CLASS_MAGIC ? ResourceFinding.Detector.CLASS_FILE : ResourceFinding.Detector.EXECUTABLE,
+                        offset - 3, (magic == CLASS_MAGIC ? "class file" : "ELF executable") + " embedded in the resource");
+            }
+
+            if (checkEntropy) {
+                histogram[b]++;
+                if (++window == ENTROPY_WINDOW)
+                    checkEntropy();
+            }
+
+            if (!base64Reported)
+                checkBase64(b);
+
+            offset++;
+        }
+    }
+
+    /**
+     * Finish the current resource
+     * @return Everything that was found in it, or null if nothing was
+     */
+    List<ResourceFinding> finish() {
+        // Resources too short for a full header still get their first bytes checked
+        if (offset > 0 && offset < 4) {
+            magic <<= 8 * (4 - offset);
+            checkHeader();
+        }
+
+        return findings.isEmpty() ? null : new ArrayList<>(findings);
+    }
+
+    private void checkHeader() {
+        if (!checkExecutable)
+            return;
+
+        if (magic == CLASS_MAGIC) {
+            add(ResourceFinding.Detector.CLASS_FILE, 0, "class file stored as a resource");
+        } else if (magic == ELF_MAGIC) {
+            add(ResourceFinding.Detector.EXECUTABLE, 0, "ELF executable");
+        } else if ((magic >>> 16) == 0x4D5A) {
+            add(ResourceFinding.Detector.EXECUTABLE, 0, "Windows executable");
+        } else if (magic == 0xFEEDFACE || magic == 0xFEEDFACF || magic == 0xCEFAEDFE || magic == 0xCFFAEDFE) {
+            add(ResourceFinding.Detector.EXECUTABLE, 0, "Mach-O executable");
+        }
+    }
+
+    private void checkEntropy() {
+        double entropy = 0;
+        for (int count : histogram) {
+            if (count == 0)
+                continue;
+
+            double p = (double) count / ENTROPY_WINDOW;
+            entropy -= p * Math.log(p);
+        }
+        entropy /= Math.log(2);
+
+        if (entropy > ENTROPY_THRESHOLD) {
+            add(ResourceFinding.Detector.ENTROPY, offset + 1 - ENTROPY_WINDOW,
+                    String.format(Locale.ROOT, "%.2f bits of entropy per byte, like compressed or encrypted data", entropy));
+            checkEntropy = false;
+            return;
+        }
+
+        Arrays.fill(histogram, 0);
+        window = 0;
+    }
+
+    private void checkBase64(int b) {
+        if (BASE64[b]) {
+            if (base64Run == 0)
+                base64Start = offset;
+            base64Run++;
+            lineLength++;
+
+            if (base64Run >= BASE64_THRESHOLD) {
+                add(ResourceFinding.Detector.BASE64, base64Start, "at least " + BASE64_THRESHOLD + " characters of Base64");
+                base64Reported = true;
+            }
+        } else if ((b == '\n' || b == '\r') && (lineLength >= BASE64_MIN_LINE || lineLength == 0) && base64Run > 0) {
+            // Wrapped Base64, the run continues on the next line
+            lineLength = 0;
+        } else {
+            base64Run = 0;
+            lineLength = 0;
+        }
+    }
+
+    private void add(ResourceFinding.Detector detector, long offset, String detail) {
+        findings.add(new ResourceFinding(entry, detector, offset, detail));
+    }
+
+    private static boolean endsWithAny(String name, String[] extensions) {
+        for (String extension : extensions) {
+            if (name.endsWith(extension))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author HypherionSA
+ * Fork/Join task that streams a range of resource entries from a jar through a {@link ResourceInspector}.
+ * Runs next to the {@link ClassScanTask}s of the same jar, and is split up the same way.
+ * <p>
+ * Resources are read against the same limits as classes, but only a chunk of them is in memory at any time.
+ */
+class ResourceScanTask extends RecursiveAction {
+
+    // Number of resources a single task will inspect before it is split up
+    private static final int THRESHOLD = 16;
+
+    private final JarSource source;
+    private final List<JarSource.Entry> entries;
+    private final int from;
+    private final int to;
+    private final ScanContext context;
+
+    ResourceScanTask(JarSource source, List<JarSource.Entry> entries, ScanContext context) {
+        this(source, entries, 0, entries.size(), context);
+    }
+
+    private ResourceScanTask(JarSource source, List<JarSource.Entry> entries, int from, int to, ScanContext context) {
+        this.source = source;
+        this.entries = entries;
+        this.from = from;
+        this.to = to;
+        this.context = context;
+    }
+
+    @Override
+    protected void compute() {
+        // Only split when running in a pool, otherwise forking would end up on the common pool
+        if (to - from > THRESHOLD && inForkJoinPool()) {
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                    new ResourceScanTask(source, entries, from, middle, context),
+                    new ResourceScanTask(source, entries, middle, to, context)
+            );
+            return;
+        }
+
+        ResourceInspector inspector = new ResourceInspector();
+        ScanBuffer buffer = source.acquireBuffer();
+
+        try {
+            for (int i = from; i < to; i++) {
+                // Another worker already decided the outcome, no point in continuing
+                if (context.isDone())
+                    return;
+
+                JarSource.Entry entry = entries.get(i);
+                context.checkDeclaredSize(entry.getName(), entry.getSize(), entry.getCompressedSize());
+
+                inspector.start(entry.getName());
+                long length;
+                try (InputStream stream = source.getInputStream(entry)) {
+                    length = buffer.skip(stream, context.maxInflatedSize(entry.getCompressedSize()), inspector);
+                }
+
+                if (length == -1)
+                    throw context.entryTooLarge(entry.getName(), entry.getCompressedSize());
+                context.countBytes(entry.getName(), length);
+                context.getStatistics().resourceScanned();
+
+                List<ResourceFinding> findings = inspector.finish();
+                if (findings != null)
+                    context.suspiciousResource(findings);
+            }
+        } catch (ScanLimitException e) {
+            context.limitExceeded(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            source.releaseBuffer(buffer);
+        }
+    }
+}
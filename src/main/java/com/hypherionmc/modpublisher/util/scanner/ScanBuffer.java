@@ -0,0 +1,185 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * @author HypherionSA
+ * Reusable buffers a single worker reads classes into.
+ * <p>
+ * Buffers are sized from the size declared for an entry, and only grow when a class does not
+ * fit. A worker takes one from its {@link JarSource} and hands it back when done, so a whole
+ * scan only allocates as many buffers as it has workers.
+ */
+final class ScanBuffer {
+
+    private final Inflater inflater = new Inflater(true);
+    private final byte[] probe = new byte[1];
+    private byte[] data = new byte[8192];
+    private byte[] input = new byte[8192];
+
+    /**
+     * @return The bytes of the last entry read into this buffer
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Inflate raw deflate data into the buffer
+     * @param compressed The compressed data, from its position to its limit
+     * @param size The size declared for the entry, or -1 if unknown
+     * @param maxSize The most bytes the entry may inflate to
+     * @return The number of bytes inflated, or -1 if the entry is larger than allowed
+     */
+    int inflate(ByteBuffer compressed, long size, long maxSize) throws IOException {
+        int compressedLength = compressed.remaining();
+
+        // The inflater needs an extra dummy byte at the end when used without a zlib header
+        if (input.length < compressedLength + 1)
+            input = new byte[compressedLength + 1];
+        compressed.duplicate().get(input, 0, compressedLength);
+        input[compressedLength] = 0;
+
+        ensureCapacity(Math.min(size, maxSize));
+        inflater.reset();
+        inflater.setInput(input, 0, compressedLength + 1);
+
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                int read;
+
+                if (length == data.length) {
+                    // Usually only the end of the stream is left, only grow if the declared size was wrong
+                    read = inflater.inflate(probe, 0, 1);
+                    if (read == 1) {
+                        if (length >= maxSize)
+                            return -1;
+
+                        data = Arrays.copyOf(data, grow(maxSize));
+                        data[length] = probe[0];
+                    }
+                } else {
+                    read = inflater.inflate(data, length, data.length - length);
+                }
+
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new ZipException("Unexpected end of compressed entry");
+
+                length += read;
+                if (length > maxSize)
+                    return -1;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+
+        return length;
+    }
+
+    /**
+     * Copy stored data into the buffer
+     * @param stored The data, from its position to its limit
+     * @return The number of bytes copied
+     */
+    int copy(ByteBuffer stored) {
+        int length = stored.remaining();
+        ensureCapacity(length);
+        stored.duplicate().get(data, 0, length);
+        return length;
+    }
+
+    /**
+     * Read a stream to its end into the buffer. The stream is not closed
+     * @param stream The stream to read
+     * @param size The size declared for the entry, or -1 if unknown
+     * @param maxSize The most bytes the stream may contain
+     * @return The number of bytes read, or -1 if the stream contains more than allowed
+     */
+    int read(InputStream stream, long size, long maxSize) throws IOException {
+        ensureCapacity(Math.min(size, maxSize));
+
+        int length = 0;
+        while (true) {
+            if (length == data.length) {
+                // Usually only the end of the stream is left, only grow if the declared size was wrong
+                int next = stream.read();
+                if (next == -1)
+                    return length;
+                if (length >= maxSize)
+                    return -1;
+
+                data = Arrays.copyOf(data, grow(maxSize));
+                data[length++] = (byte) next;
+            }
+
+            int read = stream.read(data, length, data.length - length);
+            if (read == -1)
+                return length;
+
+            length += read;
+            if (length > maxSize)
+                return -1;
+        }
+    }
+
+    /**
+     * Read a stream to its end without keeping its content. The stream is not closed
+     * @param stream The stream to read
+     * @param maxSize The most bytes the stream may contain
+     * @return The number of bytes skipped, or -1 if the stream contains more than allowed
+     */
+    long skip(InputStream stream, long maxSize) throws IOException {
+        return skip(stream, maxSize, null);
+    }
+
+    /**
+     * Read a stream to its end, handing its content to an inspector a chunk at a time. The stream is not closed
+     * @param stream The stream to read
+     * @param maxSize The most bytes the stream may contain
+     * @param inspector The inspector to hand the content to, or null to only skip it
+     * @return The number of bytes read, or -1 if the stream contains more than allowed
+     */
+    long skip(InputStream stream, long maxSize, ResourceInspector inspector) throws IOException {
+        long length = 0;
+        int read;
+        while ((read = stream.read(data, 0, data.length)) != -1) {
+            length += read;
+            if (length > maxSize)
+                return -1;
+
+            if (inspector != null)
+                inspector.update(data, 0, read);
+        }
+        return length;
+    }
+
+    /**
+     * Release the native memory held by the inflater
+     */
+    void close() {
+        inflater.end();
+    }
+
+    private int grow(long maxSize) {
+        // One more than the limit, so going over it can still be detected
+        return (int) Math.min(data.length * 2L, Math.min(maxSize + 1, Integer.MAX_VALUE - 8));
+    }
+
+    private void ensureCapacity(long size) {
+        if (size > data.length && size < Integer.MAX_VALUE - 8)
+            data = new byte[(int) size];
+    }
+}
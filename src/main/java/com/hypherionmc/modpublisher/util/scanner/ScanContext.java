@@ -0,0 +1,205 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author HypherionSA
+ * State shared by all workers of a single scan.
+ * <p>
+ * Keeps track of the scan budget, and of the outcome. Once a worker hits a limit, or finds an infected
+ * class while only the first finding is wanted, all other workers stop before their next entry.
+ */
+final class ScanContext {
+
+    private final String file;
+    private final ScanOptions options;
+    private final ScanLimits limits;
+    private final ScanStatistics statistics;
+
+    // Set when the jar is started on, since jars scanned together on a single thread wait for each other
+    private long started;
+    private long deadline;
+
+    private final AtomicLong classes = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final List<ScanFinding> findings = new ArrayList<>();
+    private final List<ResourceFinding> resourceFindings = new ArrayList<>();
+    private final AtomicReference<ScanLimitException> limit = new AtomicReference<>();
+    private volatile boolean stopped;
+
+    ScanContext(String file, ScanOptions options, ScanStatistics statistics) {
+        this.file = file;
+        this.options = options;
+        this.limits = options.getLimits();
+        this.statistics = statistics;
+    }
+
+    /**
+     * Start the clock for the scan time and timeout. Called before any worker is forked
+     */
+    void start() {
+        started = System.nanoTime();
+        deadline = started + limits.getTimeout().toNanos();
+    }
+
+    /**
+     * Record the scan time, once all workers are done
+     */
+    void finish() {
+        statistics.scanTime(System.nanoTime() - started);
+    }
+
+    ScanOptions getOptions() {
+        return options;
+    }
+
+    SignatureDatabase getSignatures() {
+        return options.getSignatures();
+    }
+
+    ScanStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return True once the scan should stop, or it ran out of time
+     */
+    boolean isDone() {
+        if (stopped)
+            return true;
+
+        if (System.nanoTime() - deadline > 0) {
+            limitExceeded(new ScanLimitException(ScanLimits.Limit.TIME, null, "it took longer than " + limits.getTimeout().getSeconds() + " seconds"));
+            return true;
+        }
+
+        return false;
+    }
+
+    void infected(List<ScanFinding> matches) {
+        synchronized (findings) {
+            findings.addAll(matches);
+        }
+
+        if (options.isStopAtFirstFinding())
+            stopped = true;
+    }
+
+    void suspiciousResource(List<ResourceFinding> matches) {
+        synchronized (resourceFindings) {
+            resourceFindings.addAll(matches);
+        }
+    }
+
+    void limitExceeded(ScanLimitException exception) {
+        limit.compareAndSet(null, exception);
+        stopped = true;
+    }
+
+    /**
+     * Time spent reading and matching a class
+     * @param entry The name of the class entry
+     * @param start The {@link System#nanoTime()} the class was started at
+     */
+    void classTimed(String entry, long start) {
+        statistics.classTimed(entry, System.nanoTime() - start);
+    }
+
+    /**
+     * @return The outcome of the scan. An infection always wins over a limit that was hit after it
+     */
+    ScanResult getResult() {
+        String version = options.getSignatures().getVersion();
+
+        List<ScanFinding> found;
+        synchronized (findings) {
+            found = new ArrayList<>(findings);
+        }
+
+        List<ResourceFinding> resources;
+        synchronized (resourceFindings) {
+            resources = new ArrayList<>(resourceFindings);
+        }
+
+        // Workers finish in any order, sort so the same jar always gives the same report
+        resources.sort(Comparator.comparing(ResourceFinding::getEntry).thenComparingLong(ResourceFinding::getOffset));
+
+        if (!found.isEmpty()) {
+            found.sort(Comparator.comparing(ScanFinding::getEntry).thenComparing(ScanFinding::getMethod));
+            return ScanResult.infected(file, version, found, resources, statistics);
+        }
+
+        ScanLimitException exception = limit.get();
+        if (exception != null)
+            return ScanResult.limitExceeded(file, version, exception, resources, statistics);
+
+        return ScanResult.clean(file, version, resources, statistics);
+    }
+
+    /**
+     * Count a class towards the class limit
+     * @param entry The name of the class entry
+     */
+    void countClass(String entry) throws ScanLimitException {
+        if (classes.incrementAndGet() > limits.getMaxClasses())
+            throw new ScanLimitException(ScanLimits.Limit.CLASS_COUNT, entry, "the jar contains more than " + limits.getMaxClasses() + " classes");
+    }
+
+    /**
+     * Check the sizes an entry claims to have, before reading it
+     * @param entry The name of the entry
+     * @param size The declared inflated size, or -1 if unknown
+     * @param compressedSize The declared compressed size, or -1 if unknown
+     */
+    void checkDeclaredSize(String entry, long size, long compressedSize) throws ScanLimitException {
+        if (size > limits.getMaxEntrySize())
+            throw entryTooLarge(entry, -1);
+
+        if (size > ScanLimits.RATIO_MIN_SIZE && compressedSize > 0 && size / compressedSize > limits.getMaxCompressionRatio())
+            throw entryTooLarge(entry, compressedSize);
+    }
+
+    /**
+     * @param compressedSize The compressed size of an entry, or -1 if unknown
+     * @return The most bytes the entry may inflate to
+     */
+    long maxInflatedSize(long compressedSize) {
+        long max = limits.getMaxEntrySize();
+        if (compressedSize > 0)
+            max = Math.min(max, Math.max(ScanLimits.RATIO_MIN_SIZE, compressedSize * limits.getMaxCompressionRatio()));
+        return max;
+    }
+
+    /**
+     * Create the exception for an entry that inflates to more than {@link #maxInflatedSize(long)}
+     * @param entry The name of the entry
+     * @param compressedSize The compressed size of the entry, or -1 if unknown
+     */
+    ScanLimitException entryTooLarge(String entry, long compressedSize) {
+        if (maxInflatedSize(compressedSize) < limits.getMaxEntrySize())
+            return new ScanLimitException(ScanLimits.Limit.COMPRESSION_RATIO, entry, entry + " inflates to more than " + limits.getMaxCompressionRatio() + " times its compressed size");
+
+        return new ScanLimitException(ScanLimits.Limit.ENTRY_SIZE, entry, entry + " is larger than " + limits.getMaxEntrySize() + " bytes");
+    }
+
+    /**
+     * Count inflated bytes towards the total size limit
+     * @param entry The name of the entry the bytes are from
+     * @param length The number of bytes
+     */
+    void countBytes(String entry, long length) throws ScanLimitException {
+        statistics.bytesInflated(length);
+        if (bytes.addAndGet(length) > limits.getMaxTotalSize())
+            throw new ScanLimitException(ScanLimits.Limit.TOTAL_SIZE, entry, "the jar inflates to more than " + limits.getMaxTotalSize() + " bytes");
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.transform.CacheableTransform;
+import org.gradle.api.artifacts.transform.InputArtifact;
+import org.gradle.api.artifacts.transform.TransformAction;
+import org.gradle.api.artifacts.transform.TransformOutputs;
+import org.gradle.api.artifacts.transform.TransformParameters;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * @author HypherionSA
+ * Artifact transform that scans a dependency jar for the presence of fractureiser, and turns it into the
+ * JSON report of the scan. See {@link ScanReport} for the layout.
+ * <p>
+ * Gradle only runs a transform once for every jar, keyed on its content and the parameters, and keeps the
+ * result in the transform cache of the Gradle user home. A library is scanned once per version, no matter
+ * how many builds or projects use it. Infected jars still get a report, which fails the task that collects
+ * them. Scans that hit a limit, or time out, fail the transform, so they are not cached and are tried again.
+ */
+@CacheableTransform
+public abstract class ScanDependencyTransform implements TransformAction<ScanDependencyTransform.Parameters> {
+
+    /**
+     * Set to true on the reports this transform creates, and false on the jars it scans
+     */
+    public static final Attribute<Boolean> SCANNED = Attribute.of("com.hypherionmc.modpublisher.scanned", Boolean.class);
+
+    private static final Logger LOGGER = Logging.getLogger(ScanDependencyTransform.class);
+
+    /**
+     * Artifact type of the reports
+     */
+    public static final String REPORT_TYPE = "modpublisher-scan-report";
+
+    public interface Parameters extends TransformParameters {
+
+        /**
+         * @return The version of the signatures, so jars are scanned again when they change
+         */
+        @Input
+        Property<String> getSignatureVersion();
+
+        /**
+         * @return Custom signature database to scan with, instead of the bundled signatures
+         */
+        @InputFile
+        @Optional
+        @PathSensitive(PathSensitivity.NONE)
+        RegularFileProperty getSignatureDatabase();
+
+        @Input
+        Property<Integer> getNestedJarDepth();
+
+        @Input
+        Property<Long> getMaxEntrySize();
+
+        @Input
+        Property<Integer> getMaxCompressionRatio();
+
+        @Input
+        Property<Long> getMaxTotalSize();
+
+        @Input
+        Property<Integer> getMaxClasses();
+
+        @Internal
+        Property<Integer> getScanTimeout();
+
+        /**
+         * @return Threads to scan a single jar with. Gradle already runs transforms of different jars in parallel
+         */
+        @Internal
+        Property<Integer> getScannerThreads();
+    }
+
+    @InputArtifact
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract Provider<FileSystemLocation> getInputArtifact();
+
+    @Override
+    public void transform(TransformOutputs outputs) {
+        File jarFile = getInputArtifact().get().getAsFile();
+        Parameters parameters = getParameters();
+
+        ScanResult result;
+        try {
+            SignatureDatabase signatures = parameters.getSignatureDatabase().isPresent()
+                    ? SignatureDatabase.load(parameters.getSignatureDatabase().get().getAsFile())
+                    : SignatureDatabase.bundled();
+
+            result = JarInfectionScanner.check(jarFile, new ScanOptions()
+                    .threads(parameters.getScannerThreads().getOrElse(1))
+                    .nestedJarDepth(parameters.getNestedJarDepth().get())
+                    .signatures(signatures)
+                    .stopAtFirstFinding(false)
+                    .limits(new ScanLimits()
+                            .maxEntrySize(parameters.getMaxEntrySize().get())
+                            .maxCompressionRatio(parameters.getMaxCompressionRatio().get())
+                            .maxTotalSize(parameters.getMaxTotalSize().get())
+                            .maxClasses(parameters.getMaxClasses().get())
+                            .timeout(Duration.ofSeconds(parameters.getScanTimeout().get()))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to scan dependency " + jarFile.getName(), e);
+        }
+
+        // Not deterministic, the same jar might pass with more time
+        if (result.getStatus() == ScanResult.Status.LIMIT_EXCEEDED)
+            throw new GradleException("Dependency " + jarFile.getAbsolutePath() + " failed the malware scan. " + result.getMessage());
+
+        if (result.getStatistics().getNestedJarsSkipped() > 0)
+            LOGGER.warn("{} jars nested in dependency {} were not scanned, they are nested deeper than nestedJarScanDepth ({})", result.getStatistics().getNestedJarsSkipped(), jarFile.getName(), parameters.getNestedJarDepth().get());
+
+        try {
+            ScanReport.write(result, outputs.file(jarFile.getName() + ".json"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the scan report of dependency " + jarFile.getName(), e);
+        }
+    }
+}
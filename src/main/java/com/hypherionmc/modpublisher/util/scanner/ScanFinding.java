@@ -0,0 +1,59 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+/**
+ * @author HypherionSA
+ * A single method that matched a signature
+ */
+public final class ScanFinding {
+
+    private final String entry;
+    private final String method;
+    private final String signature;
+    private final int confidence;
+
+    ScanFinding(String entry, String method, Signature signature) {
+        this.entry = entry;
+        this.method = method;
+        this.signature = signature.getId();
+        this.confidence = signature.getConfidence();
+    }
+
+    /**
+     * @return The class entry the method is in. Entries of nested jars are separated with {@code !/}
+     */
+    public String getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return The name and descriptor of the method, like {@code run()V}
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return The id of the signature that matched
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * @return How sure the signature is, in percent
+     */
+    public int getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public String toString() {
+        return entry + " " + method + " matches signature " + signature + " (" + confidence + "% confidence)";
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.IOException;
+
+/**
+ * @author HypherionSA
+ * Thrown when a scan hits one of its {@link ScanLimits}
+ */
+public class ScanLimitException extends IOException {
+
+    private final ScanLimits.Limit limit;
+    private final String entry;
+
+    ScanLimitException(ScanLimits.Limit limit, String entry, String message) {
+        super(message);
+        this.limit = limit;
+        this.entry = entry;
+    }
+
+    public ScanLimits.Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The entry that hit the limit, or null if the limit applies to the whole jar
+     */
+    public String getEntry() {
+        return entry;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.time.Duration;
+
+/**
+ * @author HypherionSA
+ * Limits on how much work a single scan may do. They protect the Gradle daemon against zip bombs,
+ * and against jars that are just too large to scan in a sensible amount of time.
+ * <p>
+ * Limits are enforced while entries are being read, so a scan stops as soon as one is hit,
+ * no matter what sizes the jar claims its entries have.
+ */
+public class ScanLimits {
+
+    public enum Limit {
+        ENTRY_SIZE("inflated entry size"),
+        COMPRESSION_RATIO("compression ratio"),
+        TOTAL_SIZE("total inflated size"),
+        CLASS_COUNT("number of classes"),
+        TIME("scan time");
+
+        private final String description;
+
+        Limit(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    // Small entries can compress extremely well for innocent reasons, so the ratio is only checked above this size
+    static final long RATIO_MIN_SIZE = 1024 * 1024;
+
+    private long maxEntrySize = 64L * 1024 * 1024;
+    private int maxCompressionRatio = 100;
+    private long maxTotalSize = 2L * 1024 * 1024 * 1024;
+    private long maxClasses = 1_000_000;
+    private Duration timeout = Duration.ofMinutes(10);
+
+    /**
+     * Set the maximum size of a single entry, once inflated
+     * @param maxEntrySize The size in bytes
+     */
+    public ScanLimits maxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+        return this;
+    }
+
+    /**
+     * Set the maximum ratio between the inflated and compressed size of an entry
+     * @param maxCompressionRatio The ratio, for example 100 for 1MB inflating to 100MB
+     */
+    public ScanLimits maxCompressionRatio(int maxCompressionRatio) {
+        this.maxCompressionRatio = maxCompressionRatio;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of bytes inflated over the whole scan, including nested jars
+     * @param maxTotalSize The size in bytes
+     */
+    public ScanLimits maxTotalSize(long maxTotalSize) {
+        this.maxTotalSize = maxTotalSize;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of classes in the jar, including nested jars
+     * @param maxClasses The number of classes
+     */
+    public ScanLimits maxClasses(long maxClasses) {
+        this.maxClasses = maxClasses;
+        return this;
+    }
+
+    /**
+     * Set how long the scan may take
+     * @param timeout The maximum wall clock time
+     */
+    public ScanLimits timeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public int getMaxCompressionRatio() {
+        return maxCompressionRatio;
+    }
+
+    public long getMaxTotalSize() {
+        return maxTotalSize;
+    }
+
+    public long getMaxClasses() {
+        return maxClasses;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+/**
+ * @author HypherionSA
+ * Settings used when scanning a jar
+ */
+public class ScanOptions {
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private CleanClassStore cleanClassStore;
+    private int nestedJarDepth = 3;
+    private SignatureDatabase signatures = SignatureDatabase.bundled();
+    private ScanLimits limits = new ScanLimits();
+    private boolean stopAtFirstFinding = true;
+    private boolean scanResources;
+
+    /**
+     * Set the number of threads to scan classes with. 1 or less scans on the calling thread
+     * @param threads The number of threads
+     */
+    public ScanOptions threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Skip classes that were already found clean in an earlier scan
+     * @param cleanClassStore The store of clean classes, or null to scan everything
+     */
+    public ScanOptions cleanClassStore(CleanClassStore cleanClassStore) {
+        this.cleanClassStore = cleanClassStore;
+        return this;
+    }
+
+    /**
+     * Set how deep nested jars, like jar-in-jar libraries, are scanned. 0 skips nested jars
+     * @param nestedJarDepth The maximum nesting depth
+     */
+    public ScanOptions nestedJarDepth(int nestedJarDepth) {
+        this.nestedJarDepth = nestedJarDepth;
+        return this;
+    }
+
+    /**
+     * Set the signatures to scan for. Defaults to the signatures bundled with the plugin
+     * @param signatures The signature database
+     */
+    public ScanOptions signatures(SignatureDatabase signatures) {
+        this.signatures = signatures;
+        return this;
+    }
+
+    /**
+     * Set the limits that protect against zip bombs and jars that are too large to scan
+     * @param limits The limits
+     */
+    public ScanOptions limits(ScanLimits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Set whether to stop the scan as soon as an infected class is found. When false, the whole
+     * jar is scanned so every infected class ends up in the result
+     * @param stopAtFirstFinding True to stop at the first finding
+     */
+    public ScanOptions stopAtFirstFinding(boolean stopAtFirstFinding) {
+        this.stopAtFirstFinding = stopAtFirstFinding;
+        return this;
+    }
+
+    /**
+     * Set whether to also look for encoded payloads in the resources of the jar, see {@link ResourceInspector}.
+     * Anything found is reported next to the findings, but does not make the jar infected
+     * @param scanResources True to inspect resources
+     */
+    public ScanOptions scanResources(boolean scanResources) {
+        this.scanResources = scanResources;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public CleanClassStore getCleanClassStore() {
+        return cleanClassStore;
+    }
+
+    public int getNestedJarDepth() {
+        return nestedJarDepth;
+    }
+
+    public SignatureDatabase getSignatures() {
+        return signatures;
+    }
+
+    public ScanLimits getLimits() {
+        return limits;
+    }
+
+    public boolean isStopAtFirstFinding() {
+        return stopAtFirstFinding;
+    }
+
+    public boolean isScanResources() {
+        return scanResources;
+    }
+}
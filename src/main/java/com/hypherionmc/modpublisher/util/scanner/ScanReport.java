@@ -0,0 +1,131 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Writes the result of a scan as JSON, so it can be picked up by CI dashboards.
+ * <p>
+ * The layout is kept flat and stable, new fields are only ever added:
+ * <pre>
+ * {
+ *   "file": "mymod-1.0.jar",
+ *   "status": "INFECTED",
+ *   "signatures": "1a2b3c4d",
+ *   "findings": [{ "entry": "a/B.class", "method": "run()V", "signature": "fractureiser-stage0-b", "confidence": 95 }],
+ *   "resources": [{ "entry": "assets/a/data.bin", "detector": "ENTROPY", "offset": 4096, "detail": "..." }],
+ *   "limit": { "type": "COMPRESSION_RATIO", "entry": "a/C.class", "detail": "..." },
+ *   "statistics": {
+ *     "classesScanned": 120, "classesPrefiltered": 118, "classesFromCache": 0, "nestedJarsScanned": 1, "nestedJarsSkipped": 0,
+ *     "resourcesScanned": 30,
+ *     "bytesInflated": 345678, "scanTimeMillis": 42,
+ *     "slowestClasses": [{ "entry": "a/B.class", "timeMicros": 812 }]
+ *   }
+ * }
+ * </pre>
+ * {@code limit} is only present when the scan was stopped by one of its limits, and {@code resources}
+ * only when resources were scanned and something suspicious was found in them.
+ */
+public final class ScanReport {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private ScanReport() {}
+
+    /**
+     * @param result The result to convert
+     * @return The report of the result
+     */
+    public static JsonObject toJson(ScanResult result) {
+        JsonObject json = new JsonObject();
+        json.addProperty("file", result.getFile());
+        json.addProperty("status", result.getStatus().name());
+        json.addProperty("signatures", result.getSignatureVersion());
+
+        JsonArray findings = new JsonArray();
+        for (ScanFinding finding : result.getFindings()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("entry", finding.getEntry());
+            object.addProperty("method", finding.getMethod());
+            object.addProperty("signature", finding.getSignature());
+            object.addProperty("confidence", finding.getConfidence());
+            findings.add(object);
+        }
+        json.add("findings", findings);
+
+        if (!result.getResourceFindings().isEmpty()) {
+            JsonArray resources = new JsonArray();
+            for (ResourceFinding finding : result.getResourceFindings()) {
+                JsonObject object = new JsonObject();
+                object.addProperty("entry", finding.getEntry());
+                object.addProperty("detector", finding.getDetector().name());
+                object.addProperty("offset", finding.getOffset());
+                object.addProperty("detail", finding.getDetail());
+                resources.add(object);
+            }
+            json.add("resources", resources);
+        }
+
+        if (result.getLimit() != null) {
+            JsonObject limit = new JsonObject();
+            limit.addProperty("type", result.getLimit().name());
+            limit.addProperty("entry", result.getEntry());
+            limit.addProperty("detail", result.getDetail());
+            json.add("limit", limit);
+        }
+
+        ScanStatistics statistics = result.getStatistics();
+        JsonObject stats = new JsonObject();
+        stats.addProperty("classesScanned", statistics.getClassesScanned());
+        stats.addProperty("classesPrefiltered", statistics.getClassesPrefiltered());
+        stats.addProperty("classesFromCache", statistics.getClassesFromCache());
+        stats.addProperty("nestedJarsScanned", statistics.getNestedJarsScanned());
+        stats.addProperty("nestedJarsSkipped", statistics.getNestedJarsSkipped());
+        stats.addProperty("resourcesScanned", statistics.getResourcesScanned());
+        stats.addProperty("bytesInflated", statistics.getBytesInflated());
+        stats.addProperty("scanTimeMillis", statistics.getScanTime().toMillis());
+
+        JsonArray slowest = new JsonArray();
+        for (ScanStatistics.ClassTiming timing : statistics.getSlowestClasses()) {
+            JsonObject object = new JsonObject();
+            object.addProperty("entry", timing.getEntry());
+            object.addProperty("timeMicros", TimeUnit.NANOSECONDS.toMicros(timing.getNanos()));
+            slowest.add(object);
+        }
+        stats.add("slowestClasses", slowest);
+        json.add("statistics", stats);
+
+        return json;
+    }
+
+    /**
+     * Write the report of a result to a file, replacing it if it exists
+     * @param result The result to write
+     * @param file The file to write to. Missing parent directories are created
+     */
+    public static void write(ScanResult result, File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null)
+            Files.createDirectories(parent.toPath());
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(toJson(result), writer);
+        }
+    }
+}
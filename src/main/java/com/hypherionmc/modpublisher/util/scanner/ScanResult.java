@@ -0,0 +1,159 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * The outcome of scanning a jar
+ */
+public final class ScanResult {
+
+    public enum Status {
+        // No signature matched anywhere in the jar
+        CLEAN,
+        // A class matched a signature
+        INFECTED,
+        // The scan was stopped because it hit one of its limits, so the jar could not be fully checked
+        LIMIT_EXCEEDED
+    }
+
+    private final Status status;
+    private final String file;
+    private final String signatureVersion;
+    private final List<ScanFinding> findings;
+    private final List<ResourceFinding> resourceFindings;
+    private final String entry;
+    private final ScanLimits.Limit limit;
+    private final String detail;
+    private final ScanStatistics statistics;
+
+    private ScanResult(Status status, String file, String signatureVersion, List<ScanFinding> findings, List<ResourceFinding> resourceFindings, String entry, ScanLimits.Limit limit, String detail, ScanStatistics statistics) {
+        this.status = status;
+        this.file = file;
+        this.signatureVersion = signatureVersion;
+        this.findings = Collections.unmodifiableList(findings);
+        this.resourceFindings = Collections.unmodifiableList(resourceFindings);
+        this.entry = entry;
+        this.limit = limit;
+        this.detail = detail;
+        this.statistics = statistics;
+    }
+
+    static ScanResult clean(String file, String signatureVersion, List<ResourceFinding> resourceFindings, ScanStatistics statistics) {
+        return new ScanResult(Status.CLEAN, file, signatureVersion, Collections.emptyList(), resourceFindings, null, null, null, statistics);
+    }
+
+    static ScanResult infected(String file, String signatureVersion, List<ScanFinding> findings, List<ResourceFinding> resourceFindings, ScanStatistics statistics) {
+        return new ScanResult(Status.INFECTED, file, signatureVersion, findings, resourceFindings, findings.get(0).getEntry(), null, null, statistics);
+    }
+
+    static ScanResult limitExceeded(String file, String signatureVersion, ScanLimitException exception, List<ResourceFinding> resourceFindings, ScanStatistics statistics) {
+        return new ScanResult(Status.LIMIT_EXCEEDED, file, signatureVersion, Collections.emptyList(), resourceFindings, exception.getEntry(), exception.getLimit(), exception.getMessage(), statistics);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isClean() {
+        return status == Status.CLEAN;
+    }
+
+    /**
+     * @return The name of the jar that was scanned
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * @return The version of the signature database the jar was scanned with
+     */
+    public String getSignatureVersion() {
+        return signatureVersion;
+    }
+
+    /**
+     * @return Every method that matched a signature, sorted by entry. Only the first one is found
+     * when the scan stops at the first finding
+     */
+    public List<ScanFinding> getFindings() {
+        return findings;
+    }
+
+    /**
+     * @return Suspicious resources, sorted by entry. These never affect the status of the result, and are
+     * only collected when resources are scanned
+     */
+    public List<ResourceFinding> getResourceFindings() {
+        return resourceFindings;
+    }
+
+    /**
+     * @return The first entry that was infected, or the entry that hit a limit, or null. Entries of nested jars are separated with {@code !/}
+     */
+    public String getEntry() {
+        return entry;
+    }
+
+    /**
+     * @return The id of the signature that matched the first finding, or null
+     */
+    public String getSignature() {
+        return findings.isEmpty() ? null : findings.get(0).getSignature();
+    }
+
+    /**
+     * @return How sure the signature of the first finding is, in percent
+     */
+    public int getConfidence() {
+        return findings.isEmpty() ? 0 : findings.get(0).getConfidence();
+    }
+
+    /**
+     * @return Why the scan was stopped, or null if it was not
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return The limit that stopped the scan, or null
+     */
+    public ScanLimits.Limit getLimit() {
+        return limit;
+    }
+
+    public ScanStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return A human readable description of the result
+     */
+    public String getMessage() {
+        switch (status) {
+            case INFECTED:
+                String message = "!!!! " + file + " is infected with fractureiser. " + findings.get(0);
+                if (findings.size() > 1)
+                    message += ", and " + (findings.size() - 1) + " more";
+                return message;
+            case LIMIT_EXCEEDED:
+                return "Scanning " + file + " was stopped, " + detail;
+            default:
+                return file + " is clean";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author HypherionSA
+ * Counters collected while scanning a jar. Safe to update from multiple scan workers
+ */
+public class ScanStatistics {
+
+    private final AtomicLong classesScanned = new AtomicLong();
+    private final AtomicLong classesPrefiltered = new AtomicLong();
+    private final AtomicLong classesFromCache = new AtomicLong();
+    private final AtomicLong nestedJarsScanned = new AtomicLong();
+    private final AtomicLong nestedJarsSkipped = new AtomicLong();
+    private final AtomicLong resourcesScanned = new AtomicLong();
+    private final AtomicLong bytesInflated = new AtomicLong();
+    private final AtomicLong scanTime = new AtomicLong();
+
+    // The slowest classes so far, fastest first so it can be dropped once a slower one comes in
+    private final int slowestCount;
+    private final PriorityQueue<ClassTiming> slowest = new PriorityQueue<>(Comparator.comparingLong(ClassTiming::getNanos));
+    private volatile long slowestThreshold = -1;
+
+    public ScanStatistics() {
+        this(10);
+    }
+
+    /**
+     * @param slowestCount The number of slowest classes to keep track of
+     */
+    public ScanStatistics(int slowestCount) {
+        this.slowestCount = slowestCount;
+    }
+
+    /**
+     * @return The number of classes that were handed to the scanner
+     */
+    public long getClassesScanned() {
+        return classesScanned.get();
+    }
+
+    /**
+     * @return The number of classes the constant pool prefilter ruled out, before any method was decoded
+     */
+    public long getClassesPrefiltered() {
+        return classesPrefiltered.get();
+    }
+
+    /**
+     * @return The number of classes that were skipped, because they were already found clean in an earlier scan
+     */
+    public long getClassesFromCache() {
+        return classesFromCache.get();
+    }
+
+    /**
+     * @return The number of jars nested inside the scanned jar, at any depth, that were scanned
+     */
+    public long getNestedJarsScanned() {
+        return nestedJarsScanned.get();
+    }
+
+    /**
+     * @return The number of nested jars that were not scanned, because they are nested deeper than the configured depth
+     */
+    public long getNestedJarsSkipped() {
+        return nestedJarsSkipped.get();
+    }
+
+    /**
+     * @return The number of resources that were inspected for encoded payloads, including those of nested jars
+     */
+    public long getResourcesScanned() {
+        return resourcesScanned.get();
+    }
+
+    /**
+     * @return The number of bytes read from the jar after inflating, including nested jars
+     */
+    public long getBytesInflated() {
+        return bytesInflated.get();
+    }
+
+    /**
+     * @return The time spent scanning, from opening the jar until all workers are done
+     */
+    public Duration getScanTime() {
+        return Duration.ofNanos(scanTime.get());
+    }
+
+    /**
+     * @return The classes that took the longest to read and match, slowest first
+     */
+    public List<ClassTiming> getSlowestClasses() {
+        List<ClassTiming> classes;
+        synchronized (slowest) {
+            classes = new ArrayList<>(slowest);
+        }
+        classes.sort(Comparator.comparingLong(ClassTiming::getNanos).reversed());
+        return classes;
+    }
+
+    void classScanned() {
+        classesScanned.incrementAndGet();
+    }
+
+    void classPrefiltered() {
+        classesPrefiltered.incrementAndGet();
+    }
+
+    void classFromCache() {
+        classesFromCache.incrementAndGet();
+    }
+
+    void resourceScanned() {
+        resourcesScanned.incrementAndGet();
+    }
+
+    void nestedJarScanned() {
+        nestedJarsScanned.incrementAndGet();
+    }
+
+    void nestedJarSkipped() {
+        nestedJarsSkipped.incrementAndGet();
+    }
+
+    void bytesInflated(long length) {
+        bytesInflated.addAndGet(length);
+    }
+
+    void scanTime(long nanos) {
+        scanTime.addAndGet(nanos);
+    }
+
+    void classTimed(String entry, long nanos) {
+        // Most classes are faster than the ones already kept, skip those without locking
+        if (slowestCount <= 0 || nanos <= slowestThreshold)
+            return;
+
+        synchronized (slowest) {
+            slowest.add(new ClassTiming(entry, nanos));
+            if (slowest.size() > slowestCount)
+                slowest.poll();
+            if (slowest.size() == slowestCount)
+                slowestThreshold = slowest.peek().getNanos();
+        }
+    }
+
+    /**
+     * The time it took to read and match a single class
+     */
+    public static final class ClassTiming {
+        private final String entry;
+        private final long nanos;
+
+        ClassTiming(String entry, long nanos) {
+            this.entry = entry;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The class entry. Entries of nested jars are separated with {@code !/}
+         */
+        public String getEntry() {
+            return entry;
+        }
+
+        public Duration getTime() {
+            return Duration.ofNanos(nanos);
+        }
+
+        long getNanos() {
+            return nanos;
+        }
+    }
+}
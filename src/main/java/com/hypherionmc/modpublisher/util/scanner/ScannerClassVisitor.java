@@ -0,0 +1,100 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * Class visitor that feeds method instructions straight into the signature automaton
+ * while the class is being read. Nothing is kept once a method has been visited.
+ * <p>
+ * Only plain, type and method instructions are forwarded, as those are the only instruction
+ * types signatures can be made of.
+ */
+class ScannerClassVisitor extends ClassVisitor {
+
+    private final SignatureAutomaton automaton;
+    private final long[] state;
+    private final MatchingMethodVisitor methodVisitor = new MatchingMethodVisitor();
+    private final String entry;
+    private String methodName;
+    private String methodDescriptor;
+    private List<ScanFinding> findings;
+
+    /**
+     * @param automaton The signatures to match methods against
+     * @param entry The name of the class entry, used for findings
+     */
+    ScannerClassVisitor(SignatureAutomaton automaton, String entry) {
+        super(Opcodes.ASM9);
+        this.automaton = automaton;
+        this.entry = entry;
+        this.state = automaton.newState();
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        automaton.reset(state);
+        methodName = name;
+        methodDescriptor = descriptor;
+        return methodVisitor;
+    }
+
+    /**
+     * @return True if any of the methods visited so far matched a signature
+     */
+    boolean isInfected() {
+        return findings != null;
+    }
+
+    /**
+     * @return Every method visited so far that matched a signature, or null if none did
+     */
+    List<ScanFinding> getFindings() {
+        return findings;
+    }
+
+    private class MatchingMethodVisitor extends MethodVisitor {
+
+        MatchingMethodVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            automaton.step(state, opcode, null, null);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            automaton.step(state, opcode, type, null);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            automaton.step(state, opcode, owner, descriptor);
+        }
+
+        @Override
+        public void visitEnd() {
+            Signature match = automaton.matched(state);
+            if (match == null)
+                return;
+
+            // Only infected classes get this far, so there is no need to avoid allocating
+            if (findings == null)
+                findings = new ArrayList<>(1);
+            findings.add(new ScanFinding(entry, methodName + methodDescriptor, match));
+        }
+    }
+}
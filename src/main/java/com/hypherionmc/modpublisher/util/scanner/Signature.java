@@ -0,0 +1,53 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+
+/**
+ * @author HypherionSA
+ * A sequence of instructions that identifies an infected method.
+ * <p>
+ * Only instructions whose opcode matches the next expected instruction are compared, anything
+ * else in between is ignored. An anchored signature has to be followed from the start of the
+ * method, while an unanchored one may start at any instruction.
+ * <p>
+ * Signatures are loaded from a {@link SignatureDatabase}.
+ */
+class Signature {
+
+    private final String id;
+    private final int confidence;
+    private final boolean anchored;
+    private final AbstractInsnNode[] instructions;
+
+    Signature(String id, int confidence, boolean anchored, AbstractInsnNode... instructions) {
+        this.id = id;
+        this.confidence = confidence;
+        this.anchored = anchored;
+        this.instructions = instructions;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * @return The chance, in percent, that a class matching this signature really is infected
+     */
+    int getConfidence() {
+        return confidence;
+    }
+
+    boolean isAnchored() {
+        return anchored;
+    }
+
+    AbstractInsnNode[] getInstructions() {
+        return instructions;
+    }
+}
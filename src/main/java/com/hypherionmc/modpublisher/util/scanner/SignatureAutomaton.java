@@ -0,0 +1,193 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * All signatures compiled into a single bit-parallel automaton.
+ * <p>
+ * Every signature position gets one bit in a shared state vector, followed by an accept bit.
+ * For each instruction, the positions expecting its opcode either advance (when the owner and
+ * descriptor match) or die, while all other positions are left alone. This is a handful of
+ * mask operations per 64 signature positions, so every method is matched in a single pass,
+ * no matter how many signatures there are.
+ * <p>
+ * The automaton itself is immutable and can be shared between threads. The state is a plain
+ * {@code long[]} owned by whoever is feeding instructions.
+ */
+final class SignatureAutomaton {
+
+    private final Signature[] signatures;
+    private final int[] acceptBits;
+    private final int words;
+
+    // State at the start of a method. Start bit of every signature
+    private final long[] initial;
+    // Start bits of unanchored signatures, which can begin at any instruction
+    private final long[] restart;
+    private final long[] accept;
+
+    // Positions expecting an opcode, indexed by opcode
+    private final long[][] expecting = new long[256][];
+    // Positions that match any instruction with the opcode, indexed by opcode
+    private final long[][] wildcards = new long[256][];
+    // Positions that match an exact owner and descriptor, indexed by opcode
+    @SuppressWarnings("unchecked")
+    private final Map<String, Map<String, long[]>>[] operands = new Map[256];
+
+    private SignatureAutomaton(Signature[] signatures) {
+        this.signatures = signatures;
+        this.acceptBits = new int[signatures.length];
+
+        int bits = 0;
+        for (Signature signature : signatures) {
+            bits += signature.getInstructions().length + 1;
+        }
+
+        this.words = Math.max(1, (bits + 63) >>> 6);
+        this.initial = new long[words];
+        this.restart = new long[words];
+        this.accept = new long[words];
+
+        int bit = 0;
+        for (int s = 0; s < signatures.length; s++) {
+            Signature signature = signatures[s];
+            set(initial, bit);
+
+            if (!signature.isAnchored())
+                set(restart, bit);
+
+            for (AbstractInsnNode insn : signature.getInstructions()) {
+                int opcode = insn.getOpcode();
+                set(mask(expecting, opcode), bit);
+
+                if (insn instanceof TypeInsnNode) {
+                    set(operand(opcode, ((TypeInsnNode) insn).desc, null), bit);
+                } else if (insn instanceof MethodInsnNode) {
+                    set(operand(opcode, ((MethodInsnNode) insn).owner, ((MethodInsnNode) insn).desc), bit);
+                } else if (insn instanceof InsnNode) {
+                    set(mask(wildcards, opcode), bit);
+                } else {
+                    throw new IllegalArgumentException("Unsupported instruction in signature " + signature.getId());
+                }
+
+                bit++;
+            }
+
+            acceptBits[s] = bit;
+            set(accept, bit++);
+        }
+    }
+
+    /**
+     * Compile a set of signatures into a single automaton
+     * @param signatures The signatures to compile
+     * @return The compiled automaton
+     */
+    static SignatureAutomaton compile(Signature... signatures) {
+        return new SignatureAutomaton(signatures);
+    }
+
+    /**
+     * @return A new state vector, ready for the first method
+     */
+    long[] newState() {
+        return initial.clone();
+    }
+
+    /**
+     * Prepare a state vector for a new method
+     */
+    void reset(long[] state) {
+        System.arraycopy(initial, 0, state, 0, words);
+    }
+
+    /**
+     * Advance all signatures by a single instruction
+     * @param state The state vector of the method being matched
+     * @param opcode The opcode of the instruction
+     * @param owner The owner of a method instruction, or the type of a type instruction
+     * @param desc The descriptor of a method instruction
+     */
+    void step(long[] state, int opcode, String owner, String desc) {
+        long[] expected = expecting[opcode];
+
+        // Most instructions do not appear in any signature
+        if (expected == null)
+            return;
+
+        long[] wildcard = wildcards[opcode];
+        long[] same = null;
+        Map<String, Map<String, long[]>> byOwner = operands[opcode];
+        if (byOwner != null && owner != null) {
+            Map<String, long[]> byDesc = byOwner.get(owner);
+            if (byDesc != null)
+                same = byDesc.get(desc);
+        }
+
+        long carry = 0;
+        for (int w = 0; w < words; w++) {
+            long matching = (same == null ? 0 : same[w]) | (wildcard == null ? 0 : wildcard[w]);
+            long advanced = state[w] & matching;
+            state[w] = (state[w] & ~expected[w]) | (advanced << 1) | carry | restart[w];
+            carry = advanced >>> 63;
+        }
+    }
+
+    /**
+     * @param state The state vector of the method being matched
+     * @return The first signature that was fully matched, or null if none were
+     */
+    Signature matched(long[] state) {
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            if ((state[w] & accept[w]) != 0) {
+                any = true;
+                break;
+            }
+        }
+
+        if (!any)
+            return null;
+
+        for (int s = 0; s < signatures.length; s++) {
+            int bit = acceptBits[s];
+            if ((state[bit >>> 6] & (1L << bit)) != 0)
+                return signatures[s];
+        }
+
+        return null;
+    }
+
+    private long[] operand(int opcode, String owner, String desc) {
+        Map<String, Map<String, long[]>> byOwner = operands[opcode];
+        if (byOwner == null) {
+            byOwner = new HashMap<>();
+            operands[opcode] = byOwner;
+        }
+
+        return byOwner.computeIfAbsent(owner, o -> new HashMap<>()).computeIfAbsent(desc, d -> new long[words]);
+    }
+
+    private long[] mask(long[][] masks, int opcode) {
+        if (masks[opcode] == null)
+            masks[opcode] = new long[words];
+        return masks[opcode];
+    }
+
+    private static void set(long[] mask, int bit) {
+        mask[bit >>> 6] |= 1L << bit;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * @author HypherionSA
+ * A set of malware signatures, loaded from the plugin jar or a signature file on disk.
+ * <p>
+ * The file format is described in the bundled {@code modpublisher/signatures.txt}. Every
+ * database is parsed and compiled into a {@link SignatureAutomaton} and {@link ConstantPoolPrefilter}
+ * only once per Gradle daemon, so scanning with a custom database is as fast as with the bundled one.
+ */
+public final class SignatureDatabase {
+
+    private static final String BUNDLED = "/modpublisher/signatures.txt";
+
+    // Databases that were already compiled, by the hash of their content
+    private static final Map<String, SignatureDatabase> DATABASES = new ConcurrentHashMap<>();
+
+    private static final Map<String, Integer> OPCODES = new HashMap<>();
+    private static final Set<Integer> TYPE_OPCODES = new HashSet<>(Arrays.asList(NEW, ANEWARRAY, CHECKCAST, INSTANCEOF));
+    private static final Set<Integer> METHOD_OPCODES = new HashSet<>(Arrays.asList(INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE));
+
+    static {
+        // Opcodes also holds access flags, versions and other constants. None of them share a prefix with an opcode
+        String[] notOpcodes = { "ASM", "V1_", "V_", "ACC_", "SOURCE_", "T_", "H_", "F_" };
+
+        for (Field field : Opcodes.class.getFields()) {
+            if (field.getType() != int.class || !Modifier.isStatic(field.getModifiers()))
+                continue;
+
+            String name = field.getName();
+            if (Arrays.stream(notOpcodes).anyMatch(name::startsWith) || name.matches("V\\d+"))
+                continue;
+
+            try {
+                OPCODES.put(name, field.getInt(null));
+            } catch (IllegalAccessException ignored) {}
+        }
+    }
+
+    private final String version;
+    private final Signature[] signatures;
+    private final SignatureAutomaton automaton;
+    private final ConstantPoolPrefilter prefilter;
+
+    private SignatureDatabase(String version, Signature[] signatures) {
+        this.version = version;
+        this.signatures = signatures;
+        this.automaton = SignatureAutomaton.compile(signatures);
+        this.prefilter = ConstantPoolPrefilter.create(signatures);
+    }
+
+    /**
+     * @return The signatures shipped with the plugin
+     */
+    public static SignatureDatabase bundled() {
+        return Bundled.INSTANCE;
+    }
+
+    /**
+     * Load a signature database from disk. The file is only parsed the first time its content is seen
+     * @param file The signature file
+     * @return The compiled database
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the file is not a valid signature database
+     */
+    public static SignatureDatabase load(File file) throws IOException {
+        return load(Files.readAllBytes(file.toPath()), file.getName());
+    }
+
+    private static SignatureDatabase load(byte[] content, String source) {
+        return DATABASES.computeIfAbsent(hash(content), version -> new SignatureDatabase(version, parse(content, source)));
+    }
+
+    /**
+     * @return Short id of this database. Changes whenever any of its signatures change
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The number of signatures in this database
+     */
+    public int size() {
+        return signatures.length;
+    }
+
+    Signature[] getSignatures() {
+        return signatures;
+    }
+
+    SignatureAutomaton getAutomaton() {
+        return automaton;
+    }
+
+    ConstantPoolPrefilter getPrefilter() {
+        return prefilter;
+    }
+
+    private static Signature[] parse(byte[] content, String source) {
+        List<Signature> signatures = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+
+        // Signatures tend to share owners and descriptors, so only keep a single copy of each
+        Map<String, String> strings = new HashMap<>();
+
+        String id = null;
+        int confidence = 0;
+        boolean anchored = false;
+        List<AbstractInsnNode> instructions = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] parts = line.split("\\s+");
+
+                if (id == null) {
+                    if (!parts[0].equals("signature") || parts.length != 4)
+                        throw error(source, lineNumber, "Expected 'signature <id> <confidence> <anchored|unanchored>'");
+
+                    id = parts[1];
+                    if (!ids.add(id))
+                        throw error(source, lineNumber, "Duplicate signature " + id);
+
+                    try {
+                        confidence = Integer.parseInt(parts[2]);
+                    } catch (NumberFormatException e) {
+                        confidence = -1;
+                    }
+                    if (confidence < 0 || confidence > 100)
+                        throw error(source, lineNumber, "Confidence must be a number from 0 to 100");
+
+                    if (!parts[3].equals("anchored") && !parts[3].equals("unanchored"))
+                        throw error(source, lineNumber, "Expected anchored or unanchored, got " + parts[3]);
+                    anchored = parts[3].equals("anchored");
+                    continue;
+                }
+
+                if (parts[0].equals("end")) {
+                    if (instructions.isEmpty())
+                        throw error(source, lineNumber, "Signature " + id + " has no instructions");
+
+                    signatures.add(new Signature(id, confidence, anchored, instructions.toArray(new AbstractInsnNode[0])));
+                    instructions.clear();
+                    id = null;
+                    continue;
+                }
+
+                Integer opcode = OPCODES.get(parts[0]);
+                if (opcode == null)
+                    throw error(source, lineNumber, "Unknown opcode " + parts[0]);
+
+                if (TYPE_OPCODES.contains(opcode)) {
+                    if (parts.length != 2)
+                        throw error(source, lineNumber, "Expected '" + parts[0] + " <type>'");
+                    instructions.add(new TypeInsnNode(opcode, intern(strings, parts[1])));
+                } else if (METHOD_OPCODES.contains(opcode)) {
+                    if (parts.length != 3)
+                        throw error(source, lineNumber, "Expected '" + parts[0] + " <owner> <desc>'");
+                    // The name is never compared, so it is not part of the format
+                    instructions.add(new MethodInsnNode(opcode, intern(strings, parts[1]), "", intern(strings, parts[2]), opcode == INVOKEINTERFACE));
+                } else if (isPlainInstruction(opcode)) {
+                    if (parts.length != 1)
+                        throw error(source, lineNumber, parts[0] + " does not take any operands");
+                    instructions.add(new InsnNode(opcode));
+                } else {
+                    throw error(source, lineNumber, parts[0] + " cannot be used in a signature");
+                }
+            }
+
+            if (id != null)
+                throw error(source, lineNumber, "Signature " + id + " is missing 'end'");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (signatures.isEmpty())
+            throw new IllegalArgumentException(source + " does not contain any signatures");
+
+        return signatures.toArray(new Signature[0]);
+    }
+
+    private static boolean isPlainInstruction(int opcode) {
+        return (opcode >= NOP && opcode <= DCONST_1)
+                || (opcode >= IALOAD && opcode <= SALOAD)
+                || (opcode >= IASTORE && opcode <= LXOR)
+                || (opcode >= I2L && opcode <= DCMPG)
+                || (opcode >= IRETURN && opcode <= RETURN)
+                || opcode == ARRAYLENGTH || opcode == ATHROW
+                || opcode == MONITORENTER || opcode == MONITOREXIT;
+    }
+
+    private static String intern(Map<String, String> strings, String value) {
+        return strings.computeIfAbsent(value, v -> v);
+    }
+
+    private static IllegalArgumentException error(String source, int line, String message) {
+        return new IllegalArgumentException("Invalid signature database " + source + " at line " + line + ": " + message);
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Bundled {
+        private static final SignatureDatabase INSTANCE;
+
+        static {
+            try (InputStream stream = SignatureDatabase.class.getResourceAsStream(BUNDLED)) {
+                if (stream == null)
+                    throw new IllegalStateException("Missing bundled signature database " + BUNDLED);
+
+                // Read by hand, the static init of JarInfectionScanner needs this class
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = stream.read(buffer)) != -1)
+                    content.write(buffer, 0, read);
+
+                INSTANCE = load(content.toByteArray(), BUNDLED);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
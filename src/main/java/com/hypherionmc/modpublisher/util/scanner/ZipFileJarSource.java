@@ -0,0 +1,105 @@
+/*
+ * This file is part of modpublisher, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2023 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.modpublisher.util.scanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * @author HypherionSA
+ * Reads a jar through {@link ZipFile}, for jars that cannot be memory mapped.
+ * Nested jars that cannot be read from memory are read from a temporary copy, which is deleted on close
+ */
+final class ZipFileJarSource extends JarSource {
+
+    private final File path;
+    private final ZipFile file;
+    private final List<Entry> entries;
+    private final boolean temporary;
+
+    ZipFileJarSource(File file) throws IOException {
+        this(file, "", null);
+    }
+
+    /**
+     * @param file A temporary copy of a nested jar
+     * @param prefix Put in front of the names of all entries
+     * @param parent The jar the nested jar was read from, its buffers are shared
+     */
+    ZipFileJarSource(File file, String prefix, JarSource parent) throws IOException {
+        super(parent);
+        this.path = file;
+        this.file = new ZipFile(file);
+        this.entries = this.file.stream().map(entry -> new ZipFileEntry(prefix, entry)).collect(Collectors.toList());
+        this.temporary = parent != null;
+    }
+
+    @Override
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    InputStream getInputStream(Entry entry) throws IOException {
+        return file.getInputStream(((ZipFileEntry) entry).entry);
+    }
+
+    @Override
+    ByteBuffer readClass(Entry entry, ScanBuffer buffer, ScanContext context) throws IOException {
+        int length;
+        try (InputStream stream = getInputStream(entry)) {
+            length = buffer.read(stream, entry.getSize(), context.maxInflatedSize(entry.getCompressedSize()));
+        }
+
+        if (length == -1)
+            throw context.entryTooLarge(entry.getName(), entry.getCompressedSize());
+        context.countBytes(entry.getName(), length);
+
+        return ByteBuffer.wrap(buffer.getData(), 0, length);
+    }
+
+    @Override
+    void digest(MessageDigest... digests) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream stream = Files.newInputStream(path.toPath())) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                for (MessageDigest digest : digests) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        try {
+            file.close();
+        } finally {
+            if (temporary)
+                Files.deleteIfExists(path.toPath());
+        }
+    }
+
+    private static final class ZipFileEntry extends Entry {
+        private final ZipEntry entry;
+
+        ZipFileEntry(String prefix, ZipEntry entry) {
+            super(prefix + entry.getName(), entry.getCrc(), entry.getSize(), entry.getCompressedSize());
+            this.entry = entry;
+        }
+    }
+}
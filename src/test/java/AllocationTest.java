@@ -0,0 +1,144 @@
+import com.hypherionmc.modpublisher.util.UploadPreChecks;
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import com.hypherionmc.modpublisher.util.scanner.ScanOptions;
+import com.hypherionmc.modpublisher.util.scanner.ScanResult;
+import com.hypherionmc.modpublisher.util.scanner.ScanStatistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Guards the memory use of the publish steps that run on every upload. Allocations are measured with the
+ * allocated bytes counter of the current thread, so everything under test has to run on it, and compared against
+ * the budgets in {@code allocation-budgets.properties}. When a change is expected to allocate more, raise the budget
+ * in the same commit, so the increase shows up in review
+ */
+public class AllocationTest {
+
+    private static final int CLASSES = 2_000;
+    private static final int ROUNDS = 5;
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static Properties budgets;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Allocation counters are not available on this JVM");
+
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation counters are not supported on this JVM");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        budgets = new Properties();
+        try (InputStream in = AllocationTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+            budgets.load(in);
+        }
+    }
+
+    @Test
+    public void testPrefilteredClasses(@TempDir File tempDir) throws Exception {
+        // Classes the constant pool prefilter rules out, which is nearly every class of a real mod
+        byte[] clazz = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+        checkScan(createJar(new File(tempDir, "prefiltered.jar"), clazz), true, "scan.prefiltered.bytesPerClass");
+    }
+
+    @Test
+    public void testDecodedClasses(@TempDir File tempDir) throws Exception {
+        // Classes with every call of a signature in their constant pool, so they are decoded, but in an order that never matches
+        byte[] clazz = TestClasses.createClass(mv -> {
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Runtime", "exec", "([Ljava/lang/String;)Ljava/lang/Process;", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/io/File", "getPath", "()Ljava/lang/String;", false);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/Base64$Decoder", "decode", "(Ljava/lang/String;)[B", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+            mv.visitMethodInsn(INVOKESTATIC, "java/util/Base64", "getDecoder", "()Ljava/util/Base64$Decoder;", false);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Runtime", "getRuntime", "()Ljava/lang/Runtime;", false);
+        });
+        checkScan(createJar(new File(tempDir, "decoded.jar"), clazz), false, "scan.decoded.bytesPerClass");
+    }
+
+    @Test
+    public void testCheckEmptyJar(@TempDir File tempDir) throws Exception {
+        byte[] clazz = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+        File jarFile = createJar(new File(tempDir, "mod.jar"), clazz);
+        List<String> loaders = Arrays.asList("fabric", "quilt");
+
+        long bytes = measure(() -> UploadPreChecks.checkEmptyJar(jarFile, loaders), 50);
+        checkBudget("checkEmptyJar.bytesPerCall", bytes);
+    }
+
+    private static void checkScan(File jarFile, boolean prefiltered, String budget) throws Exception {
+        // Single threaded, so every allocation of the scan happens on the thread that is measured
+        ScanOptions options = new ScanOptions().threads(1).nestedJarDepth(0);
+
+        // Make sure the classes take the path the budget is meant for
+        ScanStatistics statistics = new ScanStatistics();
+        JarInfectionScanner.check(jarFile, options, statistics);
+        assertEquals(prefiltered ? CLASSES : 0, statistics.getClassesPrefiltered(), "Synthetic classes were not handled by the prefilter as expected");
+
+        long bytes = measure(() -> {
+            ScanResult result = JarInfectionScanner.check(jarFile, options);
+            assertTrue(result.isClean(), "Synthetic jar was not clean");
+        }, ROUNDS);
+
+        checkBudget(budget, bytes / CLASSES);
+    }
+
+    /**
+     * @return The bytes allocated by a single run of the action, after letting the JIT settle
+     */
+    private static long measure(Action action, int rounds) throws Exception {
+        for (int i = 0; i < rounds * 4; i++) {
+            action.run();
+        }
+
+        long thread = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < rounds; i++) {
+            action.run();
+        }
+        return (threads.getThreadAllocatedBytes(thread) - start) / rounds;
+    }
+
+    private static void checkBudget(String name, long bytes) {
+        long budget = Long.parseLong(budgets.getProperty(name));
+        assertTrue(bytes <= budget, name + " allocated " + bytes + " bytes, over the budget of " + budget + " in allocation-budgets.properties");
+    }
+
+    private static File createJar(File file, byte[] clazz) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("fabric.mod.json"));
+            out.write("{}".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+
+            for (int i = 0; i < CLASSES; i++) {
+                out.putNextEntry(new ZipEntry("test/Sample" + i + ".class"));
+                out.write(clazz);
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+}
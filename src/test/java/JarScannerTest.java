@@ -0,0 +1,523 @@
+import com.google.gson.Gson;
+import com.hypherionmc.modpublisher.cli.ScannerCli;
+import com.hypherionmc.modpublisher.util.scanner.ArtifactInspection;
+import com.hypherionmc.modpublisher.util.scanner.CleanClassStore;
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import com.hypherionmc.modpublisher.util.scanner.ResourceFinding;
+import com.google.gson.JsonObject;
+import com.hypherionmc.modpublisher.util.scanner.ScanFinding;
+import com.hypherionmc.modpublisher.util.scanner.ScanLimits;
+import com.hypherionmc.modpublisher.util.scanner.ScanOptions;
+import com.hypherionmc.modpublisher.util.scanner.ScanReport;
+import com.hypherionmc.modpublisher.util.scanner.ScanResult;
+import com.hypherionmc.modpublisher.util.scanner.ScanStatistics;
+import com.hypherionmc.modpublisher.util.scanner.SignatureDatabase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.objectweb.asm.Opcodes.*;
+
+public class JarScannerTest {
+
+    @Test
+    public void testCleanClass() {
+        byte[] clazz = TestClasses.createClass(mv -> {
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Runtime", "getRuntime", "()Ljava/lang/Runtime;", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Runtime", "availableProcessors", "()I", false);
+        });
+
+        assertFalse(JarInfectionScanner.scanClass(clazz), "Clean class was detected as infected");
+    }
+
+    @Test
+    public void testFirstSignature() {
+        byte[] clazz = TestClasses.createClass(mv -> {
+            mv.visitTypeInsn(NEW, "java/lang/String");
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitTypeInsn(NEW, "java/lang/String");
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Class", "forName", "(Ljava/lang/String;)Ljava/lang/Class;", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Class", "getConstructor", "([Ljava/lang/Class;)Ljava/lang/reflect/Constructor;", false);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/net/URL", "<init>", "(Ljava/lang/String;Ljava/lang/String;ILjava/lang/String;)V", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/reflect/Constructor", "newInstance", "([Ljava/lang/Object;)Ljava/lang/Object;", false);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Class", "forName", "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;", false);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Class", "getMethod", "(Ljava/lang/String;[Ljava/lang/Class;)Ljava/lang/reflect/Method;", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/reflect/Method", "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;", false);
+        });
+
+        assertTrue(JarInfectionScanner.scanClass(clazz), "Class matching the first signature was not detected");
+    }
+
+    @Test
+    public void testSecondSignature() {
+        assertTrue(JarInfectionScanner.scanClass(createInfectedClass()), "Class matching the second signature was not detected");
+    }
+
+    @Test
+    public void testPrefilter() {
+        ScanStatistics statistics = new ScanStatistics();
+        byte[] clazz = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+
+        assertFalse(JarInfectionScanner.scanClass(clazz, statistics), "Clean class was detected as infected");
+        assertEquals(1, statistics.getClassesScanned(), "Class was not counted as scanned");
+        assertEquals(1, statistics.getClassesPrefiltered(), "Class without any signature references was not prefiltered");
+    }
+
+    @Test
+    public void testNestedJar(@TempDir File tempDir) throws IOException {
+        byte[] clean = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+        byte[] inner = createJar("test/Infected.class", createInfectedClass());
+        byte[] middle = createJar("META-INF/jars/inner.jar", inner);
+
+        File jarFile = new File(tempDir, "outer.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar("test/Sample.class", clean, "META-INF/jarjar/middle.jar", middle));
+        }
+
+        ScanStatistics statistics = new ScanStatistics();
+        assertTrue(JarInfectionScanner.isInfected(jarFile, new ScanOptions().threads(2).nestedJarDepth(2), statistics), "Infected class in nested jar was not detected");
+        assertEquals(2, statistics.getNestedJarsScanned(), "Not all nested jars were scanned");
+
+        ScanStatistics limited = new ScanStatistics();
+        assertFalse(JarInfectionScanner.isInfected(jarFile, new ScanOptions().threads(2).nestedJarDepth(1), limited), "Nested jar beyond the depth limit was scanned");
+        assertEquals(1, limited.getNestedJarsSkipped(), "Nested jar beyond the depth limit was not counted");
+    }
+
+    @Test
+    public void testNestedJarCentralDirectory(@TempDir File tempDir) throws IOException {
+        byte[] clean = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+
+        // A decoy archive in front of the real one. Reading the local headers from the start only finds the clean class,
+        // while the central directory at the end, which the loader reads, points at the infected one
+        ByteArrayOutputStream inner = new ByteArrayOutputStream();
+        inner.write(createJar("test/Sample.class", clean));
+        inner.write(createJar("test/Infected.class", createInfectedClass()));
+
+        File jarFile = new File(tempDir, "outer.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar("META-INF/jars/inner.jar", inner.toByteArray()));
+        }
+
+        ScanResult result = JarInfectionScanner.check(jarFile, new ScanOptions().threads(1));
+        assertEquals(ScanResult.Status.INFECTED, result.getStatus(), "Nested jar was not read from its central directory");
+        assertEquals("META-INF/jars/inner.jar!/test/Infected.class", result.getFindings().get(0).getEntry(), "Wrong entry was reported");
+    }
+
+    @Test
+    public void testStoredClass(@TempDir File tempDir) throws IOException {
+        byte[] clazz = createInfectedClass();
+        CRC32 crc = new CRC32();
+        crc.update(clazz);
+
+        ZipEntry entry = new ZipEntry("test/Infected.class");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(clazz.length);
+        entry.setCompressedSize(clazz.length);
+        entry.setCrc(crc.getValue());
+
+        File jarFile = new File(tempDir, "stored.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jarFile))) {
+            out.putNextEntry(entry);
+            out.write(clazz);
+            out.closeEntry();
+        }
+
+        assertTrue(JarInfectionScanner.isInfected(jarFile, new ScanOptions().threads(1), new ScanStatistics()), "Infected class stored without compression was not detected");
+    }
+
+    @Test
+    public void testSignatureDatabase(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "signatures.txt");
+        Files.write(file.toPath(), (
+                "# Test signature\n" +
+                "signature test-timing 50 unanchored\n" +
+                "INVOKESTATIC java/lang/System ()J\n" +
+                "LSUB\n" +
+                "end\n"
+        ).getBytes(StandardCharsets.UTF_8));
+
+        SignatureDatabase signatures = SignatureDatabase.load(file);
+        assertEquals(1, signatures.size(), "Signature was not loaded");
+        assertSame(signatures, SignatureDatabase.load(file), "Signature database was parsed twice");
+
+        byte[] matching = TestClasses.createClass(mv -> {
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "nanoTime", "()J", false);
+            mv.visitInsn(LSUB);
+            mv.visitInsn(POP2);
+        });
+        assertTrue(JarInfectionScanner.scanClass(matching, signatures, new ScanStatistics()), "Class matching a custom signature was not detected");
+        assertFalse(JarInfectionScanner.scanClass(createInfectedClass(), signatures, new ScanStatistics()), "Bundled signature was used with a custom database");
+    }
+
+    @Test
+    public void testInvalidSignatureDatabase(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "signatures.txt");
+        Files.write(file.toPath(), "signature broken 100 anchored\nINVOKESTATIC java/lang/System\nend\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> SignatureDatabase.load(file), "Method instruction without a descriptor was accepted");
+    }
+
+    @Test
+    public void testInfectedResult(@TempDir File tempDir) throws IOException {
+        byte[] inner = createJar("test/Infected.class", createInfectedClass());
+
+        File jarFile = new File(tempDir, "outer.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar("META-INF/jars/inner.jar", inner));
+        }
+
+        ScanResult result = JarInfectionScanner.check(jarFile, new ScanOptions().threads(1));
+        assertEquals(ScanResult.Status.INFECTED, result.getStatus(), "Infected class in nested jar was not detected");
+        assertEquals("META-INF/jars/inner.jar!/test/Infected.class", result.getEntry(), "Wrong entry was reported");
+        assertEquals("fractureiser-stage0-b", result.getSignature(), "Wrong signature was reported");
+    }
+
+    @Test
+    public void testFindingsReport(@TempDir File tempDir) throws IOException {
+        byte[] clean = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+        byte[] infected = createInfectedClass();
+
+        File jarFile = new File(tempDir, "infected.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar("test/B.class", infected, "test/Clean.class", clean, "test/A.class", infected));
+        }
+
+        ScanResult result = JarInfectionScanner.check(jarFile, new ScanOptions().threads(1).stopAtFirstFinding(false));
+        assertEquals(2, result.getFindings().size(), "Not every infected class was reported");
+
+        ScanFinding finding = result.getFindings().get(0);
+        assertEquals("test/A.class", finding.getEntry(), "Findings were not sorted by entry");
+        assertEquals("run()V", finding.getMethod(), "Wrong method was reported");
+        assertEquals(95, finding.getConfidence(), "Wrong confidence was reported");
+
+        ScanStatistics statistics = result.getStatistics();
+        assertEquals(3, statistics.getClassesScanned(), "Not every class was scanned");
+        assertEquals(3, statistics.getSlowestClasses().size(), "Class timings were not recorded");
+        assertTrue(statistics.getBytesInflated() >= 2L * infected.length + clean.length, "Inflated bytes were not counted");
+
+        JsonObject report = ScanReport.toJson(result);
+        assertEquals("INFECTED", report.get("status").getAsString(), "Wrong status in report");
+        assertEquals(2, report.getAsJsonArray("findings").size(), "Findings missing from report");
+        assertEquals(3, report.getAsJsonObject("statistics").get("classesScanned").getAsLong(), "Statistics missing from report");
+
+        assertEquals(1, JarInfectionScanner.check(jarFile, new ScanOptions().threads(1)).getFindings().size(), "Scan did not stop at the first finding");
+    }
+
+    @Test
+    public void testMultipleJars(@TempDir File tempDir) throws IOException {
+        byte[] clean = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+        List<File> jarFiles = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            File jarFile = new File(tempDir, "file" + i + ".jar");
+            try (FileOutputStream out = new FileOutputStream(jarFile)) {
+                out.write(i == 2 ? createJar("test/Infected.class", createInfectedClass()) : createJar("test/Sample.class", clean));
+            }
+            jarFiles.add(jarFile);
+        }
+
+        List<ScanResult> results = JarInfectionScanner.check(jarFiles, new ScanOptions().threads(4));
+        assertEquals(4, results.size(), "Not every jar was scanned");
+        for (int i = 0; i < 4; i++) {
+            assertEquals(jarFiles.get(i).getName(), results.get(i).getFile(), "Results are not in the order of the jars");
+            assertEquals(i == 2, !results.get(i).isClean(), "Wrong result for " + jarFiles.get(i).getName());
+            assertEquals(1, results.get(i).getStatistics().getClassesScanned(), "Statistics are shared between jars");
+        }
+    }
+
+    @Test
+    public void testInspection(@TempDir File tempDir) throws Exception {
+        File jarFile = new File(tempDir, "mod.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar("test/Infected.class", createInfectedClass()));
+        }
+
+        ArtifactInspection indexed = JarInfectionScanner.inspect(jarFile, null);
+        assertNull(indexed.getScanResult(), "Jar was scanned without scan options");
+        assertTrue(indexed.hasEntry("test/Infected.class"), "Entry is missing from the index");
+        assertFalse(indexed.hasEntry("fabric.mod.json"), "Index contains an entry that is not in the jar");
+
+        byte[] content = Files.readAllBytes(jarFile.toPath());
+        for (String algorithm : Arrays.asList(ArtifactInspection.SHA1, ArtifactInspection.SHA256, ArtifactInspection.SHA512)) {
+            StringBuilder expected = new StringBuilder();
+            for (byte b : MessageDigest.getInstance(algorithm).digest(content)) {
+                expected.append(String.format("%02x", b));
+            }
+            assertEquals(expected.toString(), indexed.getDigest(algorithm), "Wrong " + algorithm + " digest");
+        }
+
+        // The scan and the index come from the same pass over the jar
+        ArtifactInspection scanned = JarInfectionScanner.inspect(jarFile, new ScanOptions().threads(2));
+        assertFalse(scanned.getScanResult().isClean(), "Infected jar was not detected during the inspection");
+        assertEquals(indexed.getEntries(), scanned.getEntries(), "Scanning changed the entry index");
+        assertEquals(indexed.getDigest(ArtifactInspection.SHA256), scanned.getDigest(ArtifactInspection.SHA256), "Scanning changed the digest");
+    }
+
+    @Test
+    public void testCleanClassStore(@TempDir File tempDir) throws IOException {
+        CleanClassStore store = CleanClassStore.open(new File(tempDir, "clean-classes.bin"), 1000);
+
+        // A clean and an infected class of the same length, so they only differ in their content
+        byte[] clean = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+        byte[] infected = createInfectedClass();
+        if (clean.length < infected.length) {
+            clean = padClass(clean, infected.length);
+        } else {
+            infected = padClass(infected, clean.length);
+        }
+        assertEquals(clean.length, infected.length, "Classes could not be padded to the same length");
+
+        File cleanJar = createStoredJar(new File(tempDir, "clean.jar"), clean, crc(clean));
+        ScanStatistics first = new ScanStatistics();
+        assertFalse(JarInfectionScanner.isInfected(cleanJar, new ScanOptions().threads(1).cleanClassStore(store), first), "Clean class was detected as infected");
+        ScanStatistics second = new ScanStatistics();
+        assertFalse(JarInfectionScanner.isInfected(cleanJar, new ScanOptions().threads(1).cleanClassStore(store), second), "Known clean class was detected as infected");
+        assertEquals(1, second.getClassesFromCache(), "Known clean class was matched again");
+
+        // The infected class declares the checksum of the clean one, which must not make it skip the scan
+        File spoofedJar = createStoredJar(new File(tempDir, "spoofed.jar"), infected, crc(clean));
+        assertTrue(JarInfectionScanner.isInfected(spoofedJar, new ScanOptions().threads(1).cleanClassStore(store), new ScanStatistics()), "Infected class declaring the CRC of a clean class was skipped");
+    }
+
+    @Test
+    public void testZipBomb(@TempDir File tempDir) throws IOException {
+        // 32MB of zeros compresses to around 32KB
+        byte[] bomb = new byte[32 * 1024 * 1024];
+
+        File jarFile = new File(tempDir, "bomb.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar("test/Bomb.class", bomb));
+        }
+
+        ScanResult result = JarInfectionScanner.check(jarFile, new ScanOptions().threads(1));
+        assertEquals(ScanResult.Status.LIMIT_EXCEEDED, result.getStatus(), "Zip bomb was scanned");
+        assertEquals(ScanLimits.Limit.COMPRESSION_RATIO, result.getLimit(), "Wrong limit was reported");
+        assertEquals("test/Bomb.class", result.getEntry(), "Wrong entry was reported");
+
+        // The same entry inside a nested jar
+        File nestedFile = new File(tempDir, "nested-bomb.jar");
+        try (FileOutputStream out = new FileOutputStream(nestedFile)) {
+            out.write(createJar("META-INF/jars/bomb.jar", createJar("test/Bomb.class", bomb)));
+        }
+
+        result = JarInfectionScanner.check(nestedFile, new ScanOptions().threads(1));
+        assertEquals(ScanResult.Status.LIMIT_EXCEEDED, result.getStatus(), "Zip bomb in nested jar was scanned");
+        assertEquals(ScanLimits.Limit.COMPRESSION_RATIO, result.getLimit(), "Wrong limit was reported for nested jar");
+    }
+
+    @Test
+    public void testClassLimit(@TempDir File tempDir) throws IOException {
+        byte[] clean = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+
+        File jarFile = new File(tempDir, "classes.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar("test/A.class", clean, "test/B.class", clean, "test/C.class", clean));
+        }
+
+        ScanOptions options = new ScanOptions().threads(1).limits(new ScanLimits().maxClasses(2));
+        ScanResult result = JarInfectionScanner.check(jarFile, options);
+        assertEquals(ScanLimits.Limit.CLASS_COUNT, result.getLimit(), "Class limit was not enforced");
+        assertThrows(IOException.class, () -> JarInfectionScanner.isInfected(jarFile, options, new ScanStatistics()), "Scan that hit a limit was reported as clean");
+
+        assertTrue(JarInfectionScanner.check(jarFile, new ScanOptions().threads(1)).isClean(), "Clean jar within the limits was not clean");
+    }
+
+    @Test
+    public void testResourceScan(@TempDir File tempDir) throws IOException {
+        byte[] random = new byte[64 * 1024];
+        new java.util.Random(42).nextBytes(random);
+
+        StringBuilder base64 = new StringBuilder("payload=");
+        for (int i = 0; i < 40; i++) {
+            base64.append(java.util.Base64.getEncoder().encodeToString(Arrays.copyOfRange(random, i * 57, (i + 1) * 57))).append("\r\n");
+        }
+
+        byte[] hiddenClass = TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false));
+        byte[] text = "{ \"item.test.sample\": \"Sample Item\" }".getBytes(StandardCharsets.UTF_8);
+
+        File jarFile = new File(tempDir, "resources.jar");
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(createJar(
+                    "assets/test/lang/en_us.json", text,
+                    "assets/test/data.bin", random,
+                    "assets/test/texture.png", random,
+                    "assets/test/hidden.dat", hiddenClass,
+                    "META-INF/jars/library.jar", createJar("config.txt", base64.toString().getBytes(StandardCharsets.UTF_8))
+            ));
+        }
+
+        ScanResult result = JarInfectionScanner.check(jarFile, new ScanOptions().threads(1));
+        assertTrue(result.getResourceFindings().isEmpty(), "Resources were inspected without being asked to");
+
+        result = JarInfectionScanner.check(jarFile, new ScanOptions().threads(1).scanResources(true));
+        assertTrue(result.isClean(), "Suspicious resources made the jar infected");
+
+        List<String> found = new ArrayList<>();
+        for (ResourceFinding finding : result.getResourceFindings()) {
+            found.add(finding.getEntry() + " " + finding.getDetector());
+        }
+        assertEquals(Arrays.asList(
+                "META-INF/jars/library.jar!/config.txt BASE64",
+                "assets/test/data.bin ENTROPY",
+                "assets/test/hidden.dat CLASS_FILE"
+        ), found, "Wrong resources were reported");
+        assertEquals(5, result.getStatistics().getResourcesScanned(), "Not every resource was inspected");
+
+        JsonObject report = ScanReport.toJson(result);
+        assertEquals(3, report.getAsJsonArray("resources").size(), "Resources are missing from the report");
+    }
+
+    @Test
+    public void testCommandLine(@TempDir File tempDir) throws IOException {
+        File mods = new File(tempDir, "mods/nested");
+        Files.createDirectories(mods.toPath());
+        try (FileOutputStream out = new FileOutputStream(new File(mods, "clean.jar"))) {
+            out.write(createJar("test/Clean.class", TestClasses.createClass(mv -> mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false))));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(new ByteArrayOutputStream());
+        int exit = ScannerCli.run(new String[] { "--threads", "2", new File(tempDir, "mods").getAbsolutePath() }, new PrintStream(out, true), err);
+        assertEquals(0, exit, "Directory of clean jars was not clean");
+
+        try (FileOutputStream jar = new FileOutputStream(new File(mods, "infected.jar"))) {
+            jar.write(createJar("test/Infected.class", createInfectedClass()));
+        }
+
+        out.reset();
+        exit = ScannerCli.run(new String[] { new File(tempDir, "mods").getAbsolutePath(), new File(tempDir, "missing.jar").getAbsolutePath() }, new PrintStream(out, true), err);
+        assertEquals(1, exit, "Infected jar was not reported in the exit code");
+
+        // Every jar is printed as a single line of JSON, in whatever order the scans finish
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).trim().split("\\R");
+        assertEquals(3, lines.length, "Not every jar was printed");
+
+        List<String> statuses = new ArrayList<>();
+        for (String line : lines) {
+            statuses.add(new Gson().fromJson(line, JsonObject.class).get("status").getAsString());
+        }
+        assertTrue(statuses.contains("CLEAN") && statuses.contains("INFECTED") && statuses.contains("ERROR"), "Wrong statuses were printed: " + statuses);
+    }
+
+    private static byte[] createInfectedClass() {
+        return TestClasses.createClass(mv -> {
+            // Unrelated code before the payload, with debug info mixed in
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/System", "currentTimeMillis", "()J", false);
+            Label label = new Label();
+            mv.visitLabel(label);
+            mv.visitLineNumber(10, label);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Runtime", "getRuntime", "()Ljava/lang/Runtime;", false);
+            mv.visitMethodInsn(INVOKESTATIC, "java/util/Base64", "getDecoder", "()Ljava/util/Base64$Decoder;", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/Base64$Decoder", "decode", "(Ljava/lang/String;)[B", false);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/lang/String", "<init>", "([B)V", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/io/File", "getPath", "()Ljava/lang/String;", false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Runtime", "exec", "([Ljava/lang/String;)Ljava/lang/Process;", false);
+        });
+    }
+
+    private static byte[] createJar(Object... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry((String) entries[i]));
+                out.write((byte[]) entries[i + 1]);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Grow a class to an exact length, with an unused string constant
+     */
+    private static byte[] padClass(byte[] clazz, int length) {
+        ClassReader reader = new ClassReader(clazz);
+        ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(writer, 0);
+
+        // A new UTF-8 constant takes 3 bytes besides its content
+        int padding = length - clazz.length - 3;
+        if (padding < 0)
+            return clazz;
+
+        char[] content = new char[padding];
+        Arrays.fill(content, 'p');
+        writer.newUTF8(new String(content));
+        return writer.toByteArray();
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Write a jar with a single uncompressed class, declaring any CRC for it
+     */
+    private static File createStoredJar(File file, byte[] clazz, long declaredCrc) throws IOException {
+        ZipEntry entry = new ZipEntry("test/Sample.class");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(clazz.length);
+        entry.setCompressedSize(clazz.length);
+        entry.setCrc(crc(clazz));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(entry);
+            out.write(clazz);
+            out.closeEntry();
+        }
+
+        // The zip stream checks the CRC of stored entries, so it is replaced afterwards, in the local header and the central directory
+        byte[] jar = bytes.toByteArray();
+        patchCrc(jar, 0x04034b50, 14, declaredCrc);
+        patchCrc(jar, 0x02014b50, 16, declaredCrc);
+        Files.write(file.toPath(), jar);
+        return file;
+    }
+
+    private static void patchCrc(byte[] jar, int signature, int offset, long crc) {
+        for (int i = 0; i + 4 <= jar.length; i++) {
+            int value = (jar[i] & 0xFF) | (jar[i + 1] & 0xFF) << 8 | (jar[i + 2] & 0xFF) << 16 | (jar[i + 3] & 0xFF) << 24;
+            if (value != signature)
+                continue;
+
+            for (int b = 0; b < 4; b++) {
+                jar[i + offset + b] = (byte) (crc >>> (8 * b));
+            }
+            return;
+        }
+        throw new IllegalStateException("Signature not found in jar");
+    }
+}
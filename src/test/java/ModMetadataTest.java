@@ -0,0 +1,180 @@
+import com.hypherionmc.modpublisher.util.metadata.ModMetadata;
+import com.hypherionmc.modpublisher.util.metadata.ModMetadataReader;
+import com.hypherionmc.modpublisher.util.scanner.JarInfectionScanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ModMetadataTest {
+
+    @Test
+    public void testFabric(@TempDir File tempDir) throws IOException {
+        ModMetadata metadata = read(tempDir, "fabric.mod.json", "{\n" +
+                "  \"schemaVersion\": 1,\n" +
+                "  \"id\": \"examplemod\",\n" +
+                "  \"provides\": [\"example\"],\n" +
+                "  \"depends\": {\n" +
+                "    \"fabricloader\": \">=0.14.21\",\n" +
+                "    \"minecraft\": [\"1.20.1\", \"~1.20.2\"],\n" +
+                "    \"java\": \">=17\",\n" +
+                "    \"fabric\": \"*\",\n" +
+                "    \"cloth-config\": \">=11\"\n" +
+                "  }\n" +
+                "}");
+
+        assertEquals(Collections.singletonList("fabric"), metadata.getLoaders(), "Wrong loaders");
+        assertEquals(Collections.singletonList("1.20.1"), metadata.getMinecraftVersions(), "Wrong exact Minecraft versions");
+        assertEquals(Collections.singletonList("~1.20.2"), metadata.getMinecraftVersionRanges(), "Wrong Minecraft version ranges");
+        assertEquals(Arrays.asList("fabric-api", "cloth-config"), metadata.getRequiredDependencies(), "Wrong required dependencies");
+        assertEquals(Arrays.asList("examplemod", "example"), metadata.getModIds(), "Wrong mod ids");
+    }
+
+    @Test
+    public void testQuilt(@TempDir File tempDir) throws IOException {
+        ModMetadata metadata = read(tempDir, "quilt.mod.json", "{\n" +
+                "  \"schema_version\": 1,\n" +
+                "  \"quilt_loader\": {\n" +
+                "    \"id\": \"examplemod\",\n" +
+                "    \"depends\": [\n" +
+                "      \"quilt_loader\",\n" +
+                "      { \"id\": \"minecraft\", \"versions\": { \"any\": [\"=1.20.1\", \"1.20.x\"] } },\n" +
+                "      { \"id\": \"qsl\", \"versions\": \">=6.0.0\" },\n" +
+                "      { \"id\": \"modmenu\", \"optional\": true }\n" +
+                "    ]\n" +
+                "  }\n" +
+                "}");
+
+        assertEquals(Collections.singletonList("quilt"), metadata.getLoaders(), "Wrong loaders");
+        assertEquals(Collections.singletonList("1.20.1"), metadata.getMinecraftVersions(), "Wrong exact Minecraft versions");
+        assertEquals(Collections.singletonList("1.20.x"), metadata.getMinecraftVersionRanges(), "Wildcard was not kept as a range");
+        assertEquals(Collections.singletonList("qsl"), metadata.getRequiredDependencies(), "Wrong required dependencies");
+    }
+
+    @Test
+    public void testForge(@TempDir File tempDir) throws IOException {
+        ModMetadata metadata = read(tempDir, "META-INF/mods.toml", "modLoader = \"javafml\" # The loader\n" +
+                "loaderVersion = \"[47,)\"\n" +
+                "license = 'MIT'\n" +
+                "\n" +
+                "[[mods]]\n" +
+                "modId = \"examplemod\"\n" +
+                "version = \"${file.jarVersion}\"\n" +
+                "description = '''\n" +
+                "A mod with [[brackets]] and = signs\n" +
+                "in a multi-line # description\n" +
+                "'''\n" +
+                "authors = [\n" +
+                "    \"[[mods]]\",\n" +
+                "    [\"nested\"],\n" +
+                "]\n" +
+                "\n" +
+                "[[dependencies.examplemod]]\n" +
+                "    modId = \"forge\"\n" +
+                "    mandatory = true\n" +
+                "    versionRange = \"[47,)\"\n" +
+                "[[dependencies.examplemod]]\n" +
+                "    modId = \"minecraft\"\n" +
+                "    mandatory = true\n" +
+                "    versionRange = \"[1.20.1,1.20.1]\"\n" +
+                "[[dependencies.examplemod]]\n" +
+                "    modId = \"jei\"\n" +
+                "    mandatory = false\n" +
+                "[[dependencies.examplemod]]\n" +
+                "    modId = \"architectury\"\n" +
+                "    mandatory = true\n" +
+                "    side = \"BOTH\"\n");
+
+        assertEquals(Collections.singletonList("forge"), metadata.getLoaders(), "Wrong loaders");
+        assertEquals(Collections.singletonList("1.20.1"), metadata.getMinecraftVersions(), "Wrong exact Minecraft versions");
+        assertEquals(Collections.singletonList("architectury"), metadata.getRequiredDependencies(), "Wrong required dependencies");
+    }
+
+    @Test
+    public void testNeoForge(@TempDir File tempDir) throws IOException {
+        ModMetadata metadata = read(tempDir, "META-INF/neoforge.mods.toml", "modLoader = \"javafml\"\n" +
+                "[[mods]]\n" +
+                "modId = \"examplemod\"\n" +
+                "[[dependencies.examplemod]]\n" +
+                "modId = \"minecraft\"\n" +
+                "versionRange = \"[1.21,1.21.2)\"\n" +
+                "[[dependencies.examplemod]]\n" +
+                "modId = \"curios\"\n" +
+                "[[dependencies.examplemod]]\n" +
+                "modId = \"jei\"\n" +
+                "type = \"optional\"\n");
+
+        assertEquals(Collections.singletonList("neoforge"), metadata.getLoaders(), "Wrong loaders");
+        assertTrue(metadata.getMinecraftVersions().isEmpty(), "A range was taken as an exact version");
+        assertEquals(Collections.singletonList("[1.21,1.21.2)"), metadata.getMinecraftVersionRanges(), "Wrong Minecraft version ranges");
+        assertEquals(Collections.singletonList("curios"), metadata.getRequiredDependencies(), "Wrong required dependencies");
+    }
+
+    @Test
+    public void testMcmodInfo(@TempDir File tempDir) throws IOException {
+        ModMetadata metadata = read(tempDir, "mcmod.info", "[{\n" +
+                "  \"modid\": \"examplemod\",\n" +
+                "  \"mcversion\": \"1.12.2\",\n" +
+                "  \"requiredMods\": [\"baubles@[1.5,)\", \"forge\"]\n" +
+                "}]");
+
+        assertEquals(Collections.singletonList("forge"), metadata.getLoaders(), "Wrong loaders");
+        assertEquals(Collections.singletonList("1.12.2"), metadata.getMinecraftVersions(), "Wrong exact Minecraft versions");
+        assertEquals(Collections.singletonList("baubles"), metadata.getRequiredDependencies(), "Wrong required dependencies");
+    }
+
+    @Test
+    public void testMultiLoader(@TempDir File tempDir) throws IOException {
+        File jarFile = createJar(new File(tempDir, "multi.jar"),
+                "fabric.mod.json", "{\"id\": \"examplemod\", \"depends\": {\"minecraft\": \"1.20.1\", \"examplemod-common\": \"*\"}}",
+                "quilt.mod.json", "{\"quilt_loader\": {\"id\": \"examplemod\", \"provides\": [{\"id\": \"examplemod-common\"}]}}",
+                "META-INF/mods.toml", "[[mods]]\nmodId = \"examplemod\"\n[[dependencies.examplemod]]\nmodId = \"neoforge\"\ntype = \"required\"\n"
+        );
+
+        ModMetadata metadata = ModMetadataReader.read(JarInfectionScanner.inspect(jarFile, null));
+        assertEquals(Arrays.asList("fabric", "quilt", "neoforge"), metadata.getLoaders(), "Wrong loaders");
+        assertEquals(Collections.singletonList("1.20.1"), metadata.getMinecraftVersions(), "Wrong exact Minecraft versions");
+        assertTrue(metadata.getRequiredDependencies().isEmpty(), "Mods in the jar itself were listed as dependencies");
+    }
+
+    @Test
+    public void testNoDescriptors(@TempDir File tempDir) throws IOException {
+        File jarFile = createJar(new File(tempDir, "empty.jar"), "README.md", "Nothing here");
+        assertSame(ModMetadata.EMPTY, ModMetadataReader.read(JarInfectionScanner.inspect(jarFile, null)), "Jar without descriptors has metadata");
+    }
+
+    @Test
+    public void testInvalidDescriptor(@TempDir File tempDir) throws IOException {
+        File jarFile = createJar(new File(tempDir, "broken.jar"), "META-INF/mods.toml", "[[mods]\nmodId = \"examplemod\"\n");
+        IOException e = assertThrows(IOException.class, () -> ModMetadataReader.read(JarInfectionScanner.inspect(jarFile, null)), "Invalid descriptor was accepted");
+        assertTrue(e.getMessage().contains("mods.toml") && e.getMessage().contains("line 1"), "Error does not point at the descriptor: " + e.getMessage());
+    }
+
+    private static ModMetadata read(File tempDir, String descriptor, String content) throws IOException {
+        File jarFile = createJar(new File(tempDir, "mod.jar"), descriptor, content);
+        return ModMetadataReader.read(JarInfectionScanner.inspect(jarFile, null));
+    }
+
+    private static File createJar(File file, String... entries) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                out.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,123 @@
+import com.hypherionmc.modpublisher.util.ProjectIdCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProjectIdCacheTest {
+
+    private static final String API = "https://api.modrinth.com/v2";
+    private static final String STAGING_API = "https://staging-api.modrinth.com/v2";
+
+    @Test
+    public void testLookup(@TempDir File tempDir) {
+        ProjectIdCache cache = ProjectIdCache.open(new File(tempDir, "ids.bin"), ProjectIdCache.DEFAULT_TTL);
+        cache.put(API, "fabric-api", "P7dR8mSH");
+        cache.put(API, "AABBccdd", "AABBccdd");
+
+        ProjectIdCache.Entry entry = cache.get(API, "fabric-api");
+        assertNotNull(entry, "Entry was not found");
+        assertEquals("P7dR8mSH", entry.getProjectId(), "Wrong project ID");
+        assertFalse(entry.isStale(), "New entry is stale");
+        assertNull(cache.get(STAGING_API, "fabric-api"), "Entry of another API was returned");
+
+        // Project IDs are case-sensitive, and a slug can not be told apart from an ID
+        assertNull(cache.get(API, "aabbCCDD"), "ID lookup was not case sensitive");
+    }
+
+    @Test
+    public void testStale(@TempDir File tempDir) throws InterruptedException {
+        ProjectIdCache cache = ProjectIdCache.open(new File(tempDir, "ids.bin"), 0);
+        cache.put(API, "architectury-api", "lhGA9TYQ");
+        Thread.sleep(5);
+
+        ProjectIdCache.Entry entry = cache.get(API, "architectury-api");
+        assertNotNull(entry, "Stale entry was not returned");
+        assertTrue(entry.isStale(), "Entry older than the TTL is not stale");
+    }
+
+    @Test
+    public void testPersistence(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "caches/ids.bin");
+        ProjectIdCache cache = ProjectIdCache.open(file, ProjectIdCache.DEFAULT_TTL);
+        cache.put(API, "fabric-api", "P7dR8mSH");
+        cache.save();
+
+        ProjectIdCache loaded = ProjectIdCache.open(copy(file, new File(tempDir, "loaded.bin")), ProjectIdCache.DEFAULT_TTL);
+        ProjectIdCache.Entry entry = loaded.get(API, "fabric-api");
+        assertNotNull(entry, "Entry was not saved");
+        assertEquals("P7dR8mSH", entry.getProjectId(), "Wrong project ID after loading");
+    }
+
+    @Test
+    public void testConcurrentBuilds(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "ids.bin");
+        ProjectIdCache cache = ProjectIdCache.open(file, ProjectIdCache.DEFAULT_TTL);
+        cache.put(API, "fabric-api", "P7dR8mSH");
+        cache.put(API, "old-slug", "AAAAAAAA");
+        cache.save();
+
+        // Another build loads the cache, adds an entry and replaces the file
+        File otherFile = copy(file, new File(tempDir, "other.bin"));
+        ProjectIdCache other = ProjectIdCache.open(otherFile, ProjectIdCache.DEFAULT_TTL);
+        other.put(API, "cloth-config", "9s6osm5g");
+        other.save();
+        copy(otherFile, file);
+
+        cache.remove(API, "old-slug");
+        cache.put(API, "architectury-api", "lhGA9TYQ");
+        cache.save();
+
+        ProjectIdCache merged = ProjectIdCache.open(copy(file, new File(tempDir, "merged.bin")), ProjectIdCache.DEFAULT_TTL);
+        assertNotNull(merged.get(API, "fabric-api"), "Own entry was lost");
+        assertNotNull(merged.get(API, "architectury-api"), "New entry was lost");
+        assertNotNull(merged.get(API, "cloth-config"), "Entry of the other build was lost");
+        assertNull(merged.get(API, "old-slug"), "Removed entry came back from the other build");
+    }
+
+    @Test
+    public void testSaveWhileLocked(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "ids.bin");
+        ProjectIdCache cache = ProjectIdCache.open(file, ProjectIdCache.DEFAULT_TTL);
+        cache.put(API, "fabric-api", "P7dR8mSH");
+
+        // Another build is saving, so the save is skipped instead of waiting
+        try (FileChannel channel = FileChannel.open(new File(tempDir, "ids.bin.lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            cache.save();
+        }
+        assertFalse(file.exists(), "Cache was written while another build held the lock");
+
+        cache.save();
+        ProjectIdCache loaded = ProjectIdCache.open(copy(file, new File(tempDir, "loaded.bin")), ProjectIdCache.DEFAULT_TTL);
+        assertNotNull(loaded.get(API, "fabric-api"), "Skipped changes were not saved later");
+    }
+
+    @Test
+    public void testBrokenFile(@TempDir File tempDir) throws IOException {
+        File file = new File(tempDir, "ids.bin");
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+        ProjectIdCache cache = ProjectIdCache.open(file, ProjectIdCache.DEFAULT_TTL);
+        assertNull(cache.get(API, "fabric-api"), "Broken cache returned an entry");
+        cache.put(API, "fabric-api", "P7dR8mSH");
+        cache.save();
+    }
+
+    private static File copy(File from, File to) throws IOException {
+        Files.copy(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return to;
+    }
+}
@@ -0,0 +1,35 @@
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Builds the synthetic classes the scanner tests run against
+ */
+final class TestClasses {
+
+    private TestClasses() {}
+
+    /**
+     * @param body The instructions of the method
+     * @return A class named {@code test/Sample}, with a single static {@code run()V} method
+     */
+    static byte[] createClass(MethodBody body) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(V1_8, ACC_PUBLIC, "test/Sample", null, "java/lang/Object", null);
+
+        MethodVisitor mv = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()V", null, null);
+        mv.visitCode();
+        body.write(mv);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(32, 0);
+        mv.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    interface MethodBody {
+        void write(MethodVisitor mv);
+    }
+}